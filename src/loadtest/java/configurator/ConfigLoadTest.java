@@ -0,0 +1,728 @@
+package configurator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import configurator.api.Config;
+import configurator.api.ConfigValue;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Puts configs under server-like load and measures how they behave. It is not part of the mod jar, run it with Gradle:
+ * </p>
+ * <pre>gradlew loadTest --args="[options]"</pre>
+ * <p>
+ * Builds large synthetic configs and runs reader threads that read random values in ticks, like a tick loop would,
+ * while a reload storm rewrites the config files and reloads them and a save storm writes the loaded values back.
+ * Read, reload and save latencies are recorded in histograms, and the allocation rate of the readers is taken from the JVM.
+ * </p><p>
+ * Every file written by the reload storm stores a generation number in every value. A read is torn if its value
+ * does not belong to any generation that was written, which fails the run. A tick is inconsistent if two values of a
+ * category read in the same tick come from different generations. Reloads publish all values at once, but a tick can
+ * still read before and after one, so inconsistent ticks are expected unless the readers lock the config with --locked.
+ * </p><p>
+ * With --processes and a --disk folder, more processes of the load test are started on the same folder with
+ * {@link ConfigSync} enabled, which has to be set for this process as well. They save the configs while this process rewrites
+ * them, and every process checks that the files it reads always parse and hold a single generation, and that it reloads the
+ * changes of the others.
+ * </p>
+ * The results are written as json, see {@link ConfigLoadTest#VERSION}, so runs of different releases can be compared.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigLoadTest {
+    /** the version of the result json, changes when its layout changes */
+    public static final int VERSION = 2;
+    private static final String USAGE = "Usage: ConfigLoadTest [--configs n] [--values n] [--readers n] [--reads-per-tick n] [--reloads per second] [--saves per second]"
+        + " [--seconds n] [--warmup seconds] [--compact] [--locked] [--disk folder] [--processes n] [--out file]";
+    private static final int VALUES_PER_CATEGORY = 60;
+    private static final int TYPES = 6;
+    private static final int INT = 0, LONG = 1, DOUBLE = 2, BOOLEAN = 3, STRING = 4, ARRAY = 5;
+    /** long values are a multiple of this, so a long with mixed halves of two generations is noticed */
+    private static final long LONG_STEP = 1_000_000_007L;
+
+    /**
+     * Runs a load test from the command line. Exits with 1 if a torn read or a broken file was found, or another process
+     * of the load test failed, and with 2 on bad arguments.
+     * @param args the options
+     */
+    public static void main(String[] args) throws IOException {
+        Settings settings = new Settings();
+        File out = new File("configurator-loadtest.json");
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--compact")) settings.compact = true;
+                else if (arg.equals("--locked")) settings.locked = true;
+                else if (arg.equals("--child")) settings.child = true;
+                else if (i + 1 >= args.length) throw new IllegalArgumentException(arg);
+                else if (arg.equals("--configs")) settings.configs = Math.max(1, Integer.parseInt(args[++i]));
+                else if (arg.equals("--values")) settings.values = Math.max(VALUES_PER_CATEGORY, Integer.parseInt(args[++i]));
+                else if (arg.equals("--readers")) settings.readers = Math.max(1, Integer.parseInt(args[++i]));
+                else if (arg.equals("--reads-per-tick")) settings.readsPerTick = Math.max(2, Integer.parseInt(args[++i]));
+                else if (arg.equals("--reloads")) settings.reloadsPerSecond = Math.max(0, Double.parseDouble(args[++i]));
+                else if (arg.equals("--saves")) settings.savesPerSecond = Math.max(0, Double.parseDouble(args[++i]));
+                else if (arg.equals("--seconds")) settings.seconds = Math.max(1, Integer.parseInt(args[++i]));
+                else if (arg.equals("--warmup")) settings.warmup = Math.max(0, Integer.parseInt(args[++i]));
+                else if (arg.equals("--disk")) settings.disk = new File(args[++i]);
+                else if (arg.equals("--processes")) settings.processes = Math.max(1, Integer.parseInt(args[++i]));
+                else if (arg.equals("--out")) out = new File(args[++i]);
+                else throw new IllegalArgumentException(arg);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (settings.processes > 1 && (settings.disk == null || System.getProperty(ConfigSync.PROPERTY) == null)) {
+            System.err.println("--processes needs a --disk folder and -D" + ConfigSync.PROPERTY + " set to the poll interval");
+            System.exit(2);
+        }
+
+        Result result = run(settings);
+        try (JsonWriter writer = ConfigWriter.newJsonWriter(Files.newBufferedWriter(out.toPath(), StandardCharsets.UTF_8))) {
+            ConfigWriter.GSON.toJson(result.toJson(settings), writer);
+        }
+        System.out.printf("%d reads at %.0f reads/s: p50 %d ns, p99 %d ns, p999 %d ns, max %d ns%n", result.reads.count(), result.reads.count() / (double)settings.seconds,
+            result.reads.percentile(0.5), result.reads.percentile(0.99), result.reads.percentile(0.999), result.reads.max());
+        System.out.printf("%d reloads: p50 %.2f ms, p99 %.2f ms, p999 %.2f ms; %d saves: p50 %.2f ms, p99 %.2f ms%n", result.reloads.count(), result.reloads.percentile(0.5) / 1e6,
+            result.reloads.percentile(0.99) / 1e6, result.reloads.percentile(0.999) / 1e6, result.saves.count(), result.saves.percentile(0.5) / 1e6, result.saves.percentile(0.99) / 1e6);
+        System.out.printf("%.1f MB/s allocated by readers, %d gc runs taking %d ms%n", result.allocatedBytes / 1048576.0 / settings.seconds, result.gcCount, result.gcTime);
+        if (settings.processes > 1 || settings.child) System.out.printf("%d broken files, %d reloads of changes by other processes%n", result.brokenFiles, result.syncedReloads);
+        if (settings.processes > 1) System.out.printf("%d of %d other processes failed%n", result.failedProcesses, settings.processes - 1);
+        System.out.printf("%d torn reads, %d inconsistent ticks of %d, results written to %s%n", result.torn, result.inconsistent, result.ticks, out.getPath());
+        boolean synced = settings.processes <= 1 || settings.savesPerSecond <= 0 || result.syncedReloads > 0;
+        if (result.torn > 0 || result.brokenFiles > 0 || result.failedProcesses > 0 || !synced) System.exit(1);
+    }
+
+    /**
+     * Runs a load test. Replaces the default {@link ConfigStorage} with a fresh one while it runs.
+     * @param settings the settings of the run
+     * @return the measurements
+     */
+    public static Result run(Settings settings) {
+        ConfigStorage previous = ConfigWriter.getStorage();
+        ConfigStorage storage = settings.disk != null ? new FileConfigStorage(settings.disk.toPath()) : new MemoryConfigStorage();
+        ConfigWriter.setStorage(storage);
+        try {
+            return new Run(settings, storage).run();
+        } finally {
+            ConfigWriter.setStorage(previous);
+        }
+    }
+
+    /**
+     * Builds a synthetic config with values of every basic type, all set to generation 0.
+     * @param name the name of the config
+     * @param settings the settings of the run
+     * @return the config
+     */
+    public static Config build(String name, Settings settings) {
+        Config.Builder builder = Config.Builder.builder("loadtest").ofType(Config.Type.COMMON).withName(name);
+        if (settings.compact) builder.compactJson();
+        for (int c = 0; c < settings.values / VALUES_PER_CATEGORY; c++) {
+            builder.push("c" + c);
+            for (int i = 0; i < VALUES_PER_CATEGORY; i++) {
+                String value = "v" + i;
+                switch (i % TYPES) {
+                    case INT: builder.define(value, 0); break;
+                    case LONG: builder.define(value, 0L); break;
+                    case DOUBLE: builder.define(value, 0.5); break;
+                    case BOOLEAN: builder.define(value, false); break;
+                    case STRING: builder.define(value, "g0"); break;
+                    default: builder.define(value, Collections.nCopies(3, 0));
+                }
+            }
+            builder.pop();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds the json of a config file where every value belongs to a generation.
+     * @param config a config built by {@link ConfigLoadTest#build(String, Settings)}
+     * @param generation the generation
+     * @return the config json
+     */
+    public static JsonObject write(Config config, long generation) {
+        JsonObject json = new JsonObject();
+        for (int c = 0; c < config.categories.size(); c++) {
+            JsonObject category = new JsonObject();
+            for (int i = 0; i < VALUES_PER_CATEGORY; i++) {
+                String value = "v" + i;
+                switch (i % TYPES) {
+                    case INT: category.addProperty(value, (int)generation); break;
+                    case LONG: category.addProperty(value, generation * LONG_STEP); break;
+                    case DOUBLE: category.addProperty(value, generation + 0.5); break;
+                    case BOOLEAN: category.addProperty(value, (generation & 1) == 1); break;
+                    case STRING: category.addProperty(value, "g" + generation); break;
+                    default:
+                        JsonArray array = new JsonArray();
+                        for (int j = 0; j < 3; j++) array.add(generation);
+                        category.add(value, array);
+                }
+            }
+            json.add(config.categories.get(c).getName(), category);
+        }
+        return json;
+    }
+
+    /**
+     * Gets the generation a value was read from.
+     * @param type the type of the value
+     * @param value the value
+     * @return the generation, -1 if the value belongs to no generation, or -2 for booleans, which do not tell the generation
+     */
+    protected static long generation(int type, @Nullable Object value) {
+        if (value == null) return -1;
+        switch (type) {
+            case INT: return (Integer)value;
+            case LONG:
+                long longValue = (Long)value;
+                return longValue % LONG_STEP == 0 ? longValue / LONG_STEP : -1;
+            case DOUBLE:
+                double doubleValue = (Double)value;
+                long generation = (long)(doubleValue - 0.5);
+                return generation + 0.5 == doubleValue ? generation : -1;
+            case BOOLEAN: return -2;
+            case STRING:
+                String string = (String)value;
+                try {
+                    return string.startsWith("g") ? Long.parseLong(string.substring(1)) : -1;
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            default:
+                JsonArray array = (JsonArray)value;
+                if (array.size() != 3) return -1;
+                long first = array.get(0).getAsLong();
+                for (JsonElement element : array)
+                    if (element.getAsLong() != first) return -1;
+                return first;
+        }
+    }
+
+    private static class Run {
+        private final Settings settings;
+        private final ConfigStorage storage;
+        private final List<Config> configs = new ArrayList<>();
+        private final List<ConfigValue<?>[]> values = new ArrayList<>();
+        /** the newest generation that was written, no read may be newer */
+        private final AtomicLong published = new AtomicLong();
+        /** keeps the reload storm from writing a file while the save storm writes it */
+        private final Object edits = new Object();
+        private final AtomicInteger nextReload = new AtomicInteger();
+        private final AtomicInteger nextSave = new AtomicInteger();
+        private final AtomicInteger nextCheck = new AtomicInteger();
+        private final AtomicLong brokenFiles = new AtomicLong();
+        private final AtomicLong syncedReloads = new AtomicLong();
+        private final Histogram reloads = new Histogram();
+        private final Histogram saves = new Histogram();
+        private volatile boolean measuring = false;
+        private volatile boolean running = true;
+
+        private Run(Settings settings, ConfigStorage storage) {
+            this.settings = settings;
+            this.storage = storage;
+        }
+
+        private Result run() {
+            long time = System.currentTimeMillis();
+            // other processes write generations this one never saw, only their shape is checked
+            if (settings.child) published.set(Long.MAX_VALUE);
+            for (int i = 0; i < settings.configs; i++) {
+                Config config = build("config" + i, settings);
+                File file = ConfigWriter.getConfigFile(config);
+                if (!settings.child && storage.exists(file)) storage.delete(file);
+                Configurator.loadConfig(config, false);
+                configs.add(config);
+                values.add(config.getValues().toArray(new ConfigValue<?>[0]));
+            }
+            Configurator.LOGGER.info("Built {} load test configs with {} values each in {} ms", configs.size(), values.get(0).length, System.currentTimeMillis() - time);
+
+            List<Reader> readers = new ArrayList<>();
+            for (int i = 0; i < settings.readers; i++) {
+                Reader reader = new Reader();
+                Thread thread = new Thread(reader, "Configurator Load Test Reader " + i);
+                thread.setDaemon(true);
+                reader.thread = thread;
+                readers.add(reader);
+                thread.start();
+            }
+
+            List<Process> children = new ArrayList<>();
+            ScheduledExecutorService storms = Executors.newScheduledThreadPool(3, runnable -> {
+                Thread thread = new Thread(runnable, "Configurator Load Test Storm");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                for (int i = 1; i < settings.processes; i++) children.add(startChild(i));
+                sleep(settings.warmup * 1000L);
+                long gcCount = getGcCount();
+                long gcTime = getGcTime();
+                measuring = true;
+                if (settings.reloadsPerSecond > 0) storms.scheduleAtFixedRate(this::reload, 0, (long)(1e9 / settings.reloadsPerSecond), TimeUnit.NANOSECONDS);
+                if (settings.savesPerSecond > 0) storms.scheduleAtFixedRate(this::save, 0, (long)(1e9 / settings.savesPerSecond), TimeUnit.NANOSECONDS);
+                if (ConfigSync.isSynced(configs.get(0))) storms.scheduleWithFixedDelay(this::sync, 0, Long.getLong(ConfigSync.PROPERTY), TimeUnit.MILLISECONDS);
+                sleep(settings.seconds * 1000L);
+                measuring = false;
+                running = false;
+
+                Result result = new Result();
+                result.gcCount = getGcCount() - gcCount;
+                result.gcTime = getGcTime() - gcTime;
+                for (Reader reader : readers) {
+                    reader.thread.join();
+                    result.reads.add(reader.reads);
+                    result.torn += reader.torn;
+                    result.inconsistent += reader.inconsistent;
+                    result.ticks += reader.ticks;
+                    if (reader.allocatedBytes >= 0 && result.allocatedBytes >= 0) result.allocatedBytes += reader.allocatedBytes;
+                    else result.allocatedBytes = -1;
+                }
+                storms.shutdown();
+                storms.awaitTermination(1, TimeUnit.MINUTES);
+                for (Process child : children) {
+                    if (!child.waitFor(settings.warmup + 60L, TimeUnit.SECONDS)) child.destroyForcibly();
+                    else if (child.exitValue() == 0) continue;
+                    result.failedProcesses++;
+                }
+                for (Config config : configs) if (!check(config)) brokenFiles.incrementAndGet();
+                result.brokenFiles = brokenFiles.get();
+                result.syncedReloads = syncedReloads.get();
+                synchronized (reloads) {
+                    result.reloads.add(reloads);
+                }
+                synchronized (saves) {
+                    result.saves.add(saves);
+                }
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not start another load test process", e);
+            } finally {
+                running = false;
+                storms.shutdownNow();
+                for (Process child : children) child.destroy();
+            }
+        }
+
+        /**
+         * Starts another process of the load test on the same folder, which saves the configs while this process rewrites them.
+         */
+        private Process startChild(int index) throws IOException {
+            List<String> command = new ArrayList<>();
+            command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+            command.add("-D" + ConfigSync.PROPERTY + "=" + System.getProperty(ConfigSync.PROPERTY));
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(ConfigLoadTest.class.getName());
+            command.add("--child");
+            if (settings.compact) command.add("--compact");
+            if (settings.locked) command.add("--locked");
+            String[][] options = {{"--configs", String.valueOf(settings.configs)}, {"--values", String.valueOf(settings.values)},
+                {"--readers", String.valueOf(settings.readers)}, {"--reads-per-tick", String.valueOf(settings.readsPerTick)}, {"--reloads", "0"},
+                {"--saves", String.valueOf(settings.savesPerSecond)}, {"--seconds", String.valueOf(settings.seconds)}, {"--warmup", String.valueOf(settings.warmup)},
+                {"--disk", settings.disk.getPath()}, {"--out", "configurator-loadtest-" + index + ".json"}};
+            for (String[] option : options) Collections.addAll(command, option);
+            return new ProcessBuilder(command).inheritIO().start();
+        }
+
+        /**
+         * Reloads the configs other processes changed and checks the file of a config.
+         */
+        private void sync() {
+            if (!measuring) return;
+            syncedReloads.addAndGet(ConfigSync.poll());
+            Config config = configs.get(Math.floorMod(nextCheck.getAndIncrement(), configs.size()));
+            if (!check(config) && brokenFiles.incrementAndGet() == 1) Configurator.LOGGER.error("Broken file of config {}", config.name);
+        }
+
+        /**
+         * Checks that the file of a config parses and that all of its values belong to the same generation.
+         */
+        private boolean check(Config config) {
+            JsonObject json;
+            synchronized (config) {
+                try (ConfigSync.Lock lock = ConfigSync.lock(config, true); java.io.Reader reader = storage.newReader(ConfigWriter.getConfigFile(config))) {
+                    json = new JsonParser().parse(reader).getAsJsonObject();
+                } catch (IOException | RuntimeException e) {
+                    Configurator.LOGGER.error(e);
+                    return false;
+                }
+            }
+            long generation = -2;
+            try {
+                for (Map.Entry<String, JsonElement> category : json.entrySet()) {
+                    for (Map.Entry<String, JsonElement> entry : category.getValue().getAsJsonObject().entrySet()) {
+                        int type = Integer.parseInt(entry.getKey().substring(1)) % TYPES;
+                        long found = generation(type, toValue(type, entry.getValue()));
+                        if (found == -1 || generation >= 0 && found >= 0 && found != generation) return false;
+                        if (found >= 0) generation = found;
+                    }
+                }
+            } catch (RuntimeException e) {
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Writes the next generation into the file of a config and reloads it.
+         */
+        private void reload() {
+            if (!measuring) return;
+            Config config = configs.get(Math.floorMod(nextReload.getAndIncrement(), configs.size()));
+            synchronized (edits) {
+                long generation = published.incrementAndGet();
+                synchronized (config) {
+                    try (ConfigSync.Lock lock = ConfigSync.lock(config)) {
+                        storage.replace(ConfigWriter.getConfigFile(config), writer -> ConfigWriter.GSON.toJson(write(config, generation), writer));
+                        ConfigSync.changed(config);
+                    } catch (IOException e) {
+                        Configurator.LOGGER.error(e);
+                        return;
+                    }
+                }
+                long start = System.nanoTime();
+                Configurator.reloadConfig(config);
+                long end = System.nanoTime();
+                synchronized (reloads) {
+                    reloads.record(end - start);
+                }
+            }
+        }
+
+        /**
+         * Writes the loaded values of a config back to its file.
+         */
+        private void save() {
+            if (!measuring) return;
+            Config config = configs.get(Math.floorMod(nextSave.getAndIncrement(), configs.size()));
+            synchronized (edits) {
+                long start = System.nanoTime();
+                ConfigWriter.saveConfig(config);
+                long end = System.nanoTime();
+                synchronized (saves) {
+                    saves.record(end - start);
+                }
+            }
+        }
+
+        private class Reader implements Runnable {
+            private final Histogram reads = new Histogram();
+            private Thread thread;
+            private long torn;
+            private long inconsistent;
+            private long ticks;
+            private long allocatedBytes = -1;
+
+            @Override
+            public void run() {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                boolean started = false;
+                long allocated = 0;
+                while (running) {
+                    boolean measure = measuring;
+                    if (measure && !started) {
+                        started = true;
+                        allocated = getAllocatedBytes();
+                    }
+                    int index = random.nextInt(configs.size());
+                    Config config = configs.get(index);
+                    if (settings.locked) {
+                        synchronized (config) {
+                            tick(values.get(index), random, measure);
+                        }
+                    } else tick(values.get(index), random, measure);
+                }
+                long end = getAllocatedBytes();
+                if (started && allocated >= 0 && end >= 0) allocatedBytes = end - allocated;
+            }
+
+            private void tick(ConfigValue<?>[] values, ThreadLocalRandom random, boolean measure) {
+                // the first and the last int of a category are read in every tick to check the tick saw a single generation
+                int category = random.nextInt(values.length / VALUES_PER_CATEGORY) * VALUES_PER_CATEGORY;
+                long first = read(values, category, measure);
+                for (int i = 2; i < settings.readsPerTick; i++) read(values, random.nextInt(values.length), measure);
+                long last = read(values, category + VALUES_PER_CATEGORY - TYPES, measure);
+                if (!measure) return;
+                ticks++;
+                if (first >= 0 && last >= 0 && first != last) inconsistent++;
+            }
+
+            private long read(ConfigValue<?>[] values, int index, boolean measure) {
+                long start = System.nanoTime();
+                Object value = values[index].get();
+                long end = System.nanoTime();
+                long generation = generation(index % TYPES, value);
+                if (!measure) return generation;
+                reads.record(end - start);
+                if (generation == -1 || generation > published.get()) {
+                    torn++;
+                    if (torn == 1) Configurator.LOGGER.error("Torn read of {}: {}", values[index].getName(), value);
+                }
+                return generation;
+            }
+        }
+    }
+
+    @Nullable
+    private static Object toValue(int type, JsonElement json) {
+        switch (type) {
+            case INT: return json.getAsInt();
+            case LONG: return json.getAsLong();
+            case DOUBLE: return json.getAsDouble();
+            case BOOLEAN: return json.getAsBoolean();
+            case STRING: return json.getAsString();
+            default: return json.getAsJsonArray();
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) Thread.sleep(millis);
+    }
+
+    /**
+     * @return the bytes allocated by the current thread, or -1 if the JVM does not tell
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+        return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) count += Math.max(0, bean.getCollectionCount());
+        return count;
+    }
+
+    private static long getGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) time += Math.max(0, bean.getCollectionTime());
+        return time;
+    }
+
+    /**
+     * The settings of a load test run.
+     */
+    public static class Settings {
+        /** the amount of synthetic configs */
+        public int configs = 1;
+        /** the amount of values per config, rounded down to whole categories of 60 values */
+        public int values = 6000;
+        /** the amount of reader threads */
+        public int readers = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+        /** the amount of values each reader reads per tick */
+        public int readsPerTick = 64;
+        /** how often a config file is rewritten and reloaded */
+        public double reloadsPerSecond = 10;
+        /** how often a config is saved */
+        public double savesPerSecond = 1;
+        /** how long the load test measures */
+        public int seconds = 10;
+        /** how long the readers run before the load test measures */
+        public int warmup = 2;
+        /** if the synthetic configs store their array values in compact form */
+        public boolean compact = false;
+        /** if readers lock the config for every tick */
+        public boolean locked = false;
+        /** the folder the config files are written to, or null to keep them in memory */
+        @Nullable
+        public File disk;
+        /** the amount of processes sharing the folder, the others are started by this one */
+        public int processes = 1;
+        /** if this process was started by another process of the load test */
+        public boolean child = false;
+
+        private JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("configs", configs);
+            json.addProperty("values", values / VALUES_PER_CATEGORY * VALUES_PER_CATEGORY);
+            json.addProperty("readers", readers);
+            json.addProperty("readsPerTick", readsPerTick);
+            json.addProperty("reloadsPerSecond", reloadsPerSecond);
+            json.addProperty("savesPerSecond", savesPerSecond);
+            json.addProperty("seconds", seconds);
+            json.addProperty("warmup", warmup);
+            json.addProperty("compact", compact);
+            json.addProperty("locked", locked);
+            json.addProperty("storage", disk != null ? "disk" : "memory");
+            json.addProperty("processes", processes);
+            json.addProperty("child", child);
+            return json;
+        }
+    }
+
+    /**
+     * The measurements of a load test run. Latencies are in nanoseconds.
+     */
+    public static class Result {
+        public final Histogram reads = new Histogram();
+        public final Histogram reloads = new Histogram();
+        public final Histogram saves = new Histogram();
+        /** the bytes allocated by the reader threads, or -1 if the JVM does not tell */
+        public long allocatedBytes;
+        public long gcCount;
+        public long gcTime;
+        /** reads of values that belong to no written generation */
+        public long torn;
+        /** ticks that read two generations from the same category */
+        public long inconsistent;
+        public long ticks;
+        /** config files that did not parse or held values of several generations */
+        public long brokenFiles;
+        /** reloads of configs changed by other processes */
+        public long syncedReloads;
+        /** other processes of the load test that failed or did not finish */
+        public int failedProcesses;
+
+        /**
+         * Converts the results into json.
+         * @param settings the settings of the run
+         * @return the result json
+         */
+        public JsonObject toJson(Settings settings) {
+            JsonObject json = new JsonObject();
+            json.addProperty("version", VERSION);
+            json.addProperty("time", System.currentTimeMillis());
+            json.addProperty("java", System.getProperty("java.version"));
+            json.addProperty("processors", Runtime.getRuntime().availableProcessors());
+            json.add("settings", settings.toJson());
+            JsonObject readJson = reads.toJson();
+            readJson.addProperty("perSecond", reads.count() / (double)settings.seconds);
+            json.add("reads", readJson);
+            json.add("reloads", reloads.toJson());
+            json.add("saves", saves.toJson());
+            JsonObject allocation = new JsonObject();
+            allocation.addProperty("bytesPerSecond", allocatedBytes >= 0 ? allocatedBytes / (double)settings.seconds : -1);
+            allocation.addProperty("bytesPerRead", allocatedBytes >= 0 ? allocatedBytes / (double)Math.max(1, reads.count()) : -1);
+            allocation.addProperty("gcCount", gcCount);
+            allocation.addProperty("gcTimeMillis", gcTime);
+            json.add("allocation", allocation);
+            JsonObject consistency = new JsonObject();
+            consistency.addProperty("tornReads", torn);
+            consistency.addProperty("inconsistentTicks", inconsistent);
+            consistency.addProperty("ticks", ticks);
+            json.add("consistency", consistency);
+            JsonObject sync = new JsonObject();
+            sync.addProperty("brokenFiles", brokenFiles);
+            sync.addProperty("syncedReloads", syncedReloads);
+            sync.addProperty("failedProcesses", failedProcesses);
+            json.add("sync", sync);
+            return json;
+        }
+    }
+
+    /**
+     * <p>
+     * A latency histogram with buckets that grow with the latency, recording never allocates.
+     * </p>
+     * Every power of two is split into 16 buckets, so percentiles are accurate to about 6%.
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKETS = 16;
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long count;
+        private long max;
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) return (int)Math.max(0, value);
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return (exponent - 3) * SUB_BUCKETS + (int)((value >>> (exponent - 4)) & (SUB_BUCKETS - 1));
+        }
+
+        private static long lowestValue(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = bucket / SUB_BUCKETS + 3;
+            return (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 4);
+        }
+
+        /**
+         * Records a latency.
+         * @param value the latency
+         */
+        public void record(long value) {
+            counts[bucket(value)]++;
+            count++;
+            if (value > max) max = value;
+        }
+
+        /**
+         * Adds the latencies of another histogram to this one.
+         * @param other the other histogram
+         */
+        public void add(Histogram other) {
+            for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        /**
+         * @return the amount of recorded latencies
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return the highest recorded latency
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * Gets a percentile of the recorded latencies.
+         * @param fraction the percentile as a fraction, 0.99 for p99
+         * @return the lowest latency of the bucket holding the percentile, or 0 if nothing was recorded
+         */
+        public long percentile(double fraction) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long)Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(lowestValue(i), max);
+            }
+            return max;
+        }
+
+        private JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("count", count);
+            json.addProperty("p50", percentile(0.5));
+            json.addProperty("p99", percentile(0.99));
+            json.addProperty("p999", percentile(0.999));
+            json.addProperty("max", max);
+            return json;
+        }
+    }
+}
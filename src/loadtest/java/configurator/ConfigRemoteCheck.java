@@ -0,0 +1,158 @@
+package configurator;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Checks {@link ConfigRemote} against a local HTTP server, so no network is needed. It is not part of the mod jar, run it with Gradle:
+ * </p>
+ * <pre>gradlew remoteCheck</pre>
+ * The server answers requests carrying the current ETag with 304 and can send a Digest header that does not match the body.
+ * The check makes sure new files are applied, unchanged files are not downloaded again, and files with a wrong digest,
+ * a wrong pinned hash or invalid content leave the local copy as it was.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigRemoteCheck {
+    private static final String FIRST = "{\"value\":1}";
+    private static final String SECOND = "{\"value\":2}";
+
+    /**
+     * Runs every check and prints the result of each. Exits with 1 if one failed.
+     * @param args not used
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("configurator-remote").toFile();
+        File file = new File(dir, "remote.json");
+        File meta = new File(dir, "remote.properties");
+        Server server = new Server();
+        int failed = 0;
+        try {
+            server.serve(FIRST, "\"1\"", true);
+            failed += check("a new file is applied", fetch(server, file, meta, null) == ConfigRemote.Result.UPDATED && FIRST.equals(read(file)));
+            failed += check("an unchanged file is answered with 304", fetch(server, file, meta, null) == ConfigRemote.Result.NOT_MODIFIED
+                && "\"1\"".equals(server.ifNoneMatch) && server.notModified.get() == 1);
+
+            server.serve(SECOND, "\"2\"", false);
+            failed += check("a digest mismatch keeps the local copy", fetch(server, file, meta, null) == ConfigRemote.Result.FAILED && FIRST.equals(read(file)));
+
+            server.serve(SECOND, "\"2\"", true);
+            failed += check("a pinned hash mismatch keeps the local copy", fetch(server, file, meta, toHex(sha256(FIRST))) == ConfigRemote.Result.FAILED
+                && FIRST.equals(read(file)));
+            failed += check("a changed file is applied", fetch(server, file, meta, toHex(sha256(SECOND))) == ConfigRemote.Result.UPDATED && SECOND.equals(read(file)));
+
+            server.serve(SECOND, null, true);
+            failed += check("the same body without an ETag is not applied again", fetch(server, file, meta, null) == ConfigRemote.Result.NOT_MODIFIED
+                && SECOND.equals(read(file)));
+
+            server.serve("[", null, true);
+            failed += check("invalid content keeps the local copy", fetch(server, file, meta, null) == ConfigRemote.Result.FAILED && SECOND.equals(read(file)));
+        } finally {
+            server.http.stop(0);
+            File[] files = dir.listFiles();
+            if (files != null) for (File child : files) Files.deleteIfExists(child.toPath());
+            Files.deleteIfExists(dir.toPath());
+        }
+        System.out.printf("%d checks failed%n", failed);
+        if (failed > 0) System.exit(1);
+    }
+
+    private static ConfigRemote.Result fetch(Server server, File file, File meta, @Nullable String sha256) {
+        return ConfigRemote.fetch(server.url, file, meta, sha256, ConfigRemoteCheck::isJsonObject);
+    }
+
+    private static int check(String name, boolean passed) {
+        System.out.printf("%s: %s%n", passed ? "passed" : "FAILED", name);
+        return passed ? 0 : 1;
+    }
+
+    @Nullable
+    private static String read(File file) throws IOException {
+        return file.isFile() ? new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8) : null;
+    }
+
+    private static boolean isJsonObject(byte[] content) {
+        try {
+            return new JsonParser().parse(new String(content, StandardCharsets.UTF_8)).isJsonObject();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static byte[] sha256(String content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) builder.append(String.format("%02x", b));
+        return builder.toString();
+    }
+
+    /**
+     * Serves one file with an optional ETag and a Digest header, and remembers the conditional header of the last request.
+     */
+    private static class Server {
+        private final HttpServer http;
+        private final String url;
+        private volatile String body = "";
+        @Nullable
+        private volatile String etag;
+        private volatile boolean digestMatches;
+        @Nullable
+        private volatile String ifNoneMatch;
+        private final AtomicInteger notModified = new AtomicInteger();
+
+        private Server() throws IOException {
+            http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            http.createContext("/", this::handle);
+            http.start();
+            url = "http://" + http.getAddress().getHostString() + ":" + http.getAddress().getPort() + "/remote.json";
+        }
+
+        private void serve(String body, @Nullable String etag, boolean digestMatches) {
+            this.body = body;
+            this.etag = etag;
+            this.digestMatches = digestMatches;
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            String etag = this.etag;
+            ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (etag != null && etag.equals(ifNoneMatch)) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] content = body.getBytes(StandardCharsets.UTF_8);
+            if (etag != null) exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Digest", "sha-256=" + Base64.getEncoder().encodeToString(sha256(digestMatches ? body : body + " ")));
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream stream = exchange.getResponseBody()) {
+                stream.write(content);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package configurator;
+
+import com.google.gson.JsonObject;
+import configurator.api.Config;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * A single indexed archive that holds many config files, so they can all be read with one sequential read.
+ * </p><p>
+ * A bundle is packed at modpack build time with {@link ConfigBundle#pack(File, File)} (or by running this class).
+ * If a bundle exists at {@link ConfigBundle#FILE_NAME} inside the config folder it is mapped on the first config load,
+ * and every config without a loose file on disk is read from its slice of the bundle.
+ * </p>
+ * Loose files always override bundle entries.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigBundle {
+    /** the default file name of the bundle inside the config folder */
+    public static final String FILE_NAME = "configurator.bundle";
+    /** system property that points to a bundle outside of the config folder */
+    public static final String PROPERTY = "configurator.bundle";
+    private static final int MAGIC = 0x43464742;
+    private static final int VERSION = 1;
+
+    private static ConfigBundle instance;
+    private static boolean opened = false;
+
+    private final Map<String, ByteBuffer> entries;
+
+    protected ConfigBundle(Map<String, ByteBuffer> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Gets the bundle of this game instance, opening it on the first call.
+     * @return the bundle, or null if no bundle exists
+     */
+    @Nullable
+    public static synchronized ConfigBundle get() {
+        if (!opened) {
+            opened = true;
+            String property = System.getProperty(PROPERTY);
+            File file;
+            if (property != null) file = new File(property);
+            else if (System.getProperty(ConfigRemote.BUNDLE_PROPERTY) != null) file = ConfigRemote.fetchBundle();
+            else file = new File(ConfigWriter.CONFIG_DIR, FILE_NAME);
+            if (file.isFile()) {
+                long time = System.currentTimeMillis();
+                try {
+                    instance = open(file);
+                    Configurator.LOGGER.info("Opened config bundle {} with {} entries in {} ms", file.getPath(), instance.size(), System.currentTimeMillis() - time);
+                } catch (IOException | RuntimeException e) {
+                    Configurator.LOGGER.error("Could not open config bundle {}", file.getPath());
+                    Configurator.LOGGER.error(e);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Maps a bundle file into memory and reads its index.
+     * @param file the bundle file
+     * @return the opened bundle
+     * @throws IOException if the file could not be read or is not a bundle
+     */
+    public static ConfigBundle open(File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            return open(buffer);
+        } catch (IOException e) {
+            throw new IOException(String.format("Could not read config bundle %s: %s", file.getPath(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Reads the index of a bundle held in memory.
+     * @param buffer the bundle content
+     * @return the opened bundle
+     * @throws IOException if the content is not a bundle
+     */
+    public static ConfigBundle open(ByteBuffer buffer) throws IOException {
+        buffer = buffer.duplicate();
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) throw new IOException("not a config bundle!");
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IOException(String.format("Unsupported config bundle version %d", version));
+
+        int count = buffer.getInt();
+        String[] keys = new String[count];
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(key);
+            keys[i] = new String(key, StandardCharsets.UTF_8);
+            offsets[i] = buffer.getInt();
+            lengths[i] = buffer.getInt();
+            if (offsets[i] < 0 || lengths[i] < 0) throw new IOException(String.format("Invalid config bundle entry %s", keys[i]));
+        }
+
+        int dataStart = buffer.position();
+        for (int i = 0; i < count; i++)
+            if ((long)dataStart + offsets[i] + lengths[i] > buffer.limit()) throw new IOException(String.format("Config bundle entry %s is cut off", keys[i]));
+        Map<String, ByteBuffer> entries = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(dataStart + offsets[i]);
+            slice.limit(dataStart + offsets[i] + lengths[i]);
+            entries.put(keys[i], slice.slice());
+        }
+        return new ConfigBundle(entries);
+    }
+
+    /**
+     * Gets the key a config is stored under inside a bundle.
+     * @param config the config
+     * @return the config file path relative to the config folder
+     */
+    public static String getKey(Config config) {
+        return getKey(ConfigWriter.getGlobalConfigFile(config));
+    }
+
+    /**
+     * Gets the key a file inside the config folder is stored under inside a bundle.
+     * @param file the file
+     * @return the file path relative to the config folder
+     */
+    public static String getKey(File file) {
+        return getKey(ConfigWriter.CONFIG_DIR.toPath(), file.toPath());
+    }
+
+    private static String getKey(Path root, Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Checks if this bundle holds an entry for the given config.
+     * @param config the config
+     * @return if the bundle has the config
+     */
+    public boolean contains(Config config) {
+        return entries.containsKey(getKey(config));
+    }
+
+    /**
+     * Parses the bundle entry of the given config.
+     * @param config the config to read
+     * @return the parsed json, or null if the bundle has no entry for the config
+     */
+    @Nullable
+    public JsonObject read(Config config) {
+        return read(getKey(config));
+    }
+
+    /**
+     * Parses a bundle entry.
+     * @param key the key of the entry, see {@link ConfigBundle#getKey(File)}
+     * @return the parsed json, or null if the bundle has no such entry
+     */
+    @Nullable
+    public JsonObject read(String key) {
+        ByteBuffer slice = entries.get(key);
+        if (slice == null) return null;
+        return ConfigWriter.GSON.fromJson(StandardCharsets.UTF_8.decode(slice.duplicate()).toString(), JsonObject.class);
+    }
+
+    /**
+     * Gets the amount of configs stored in this bundle.
+     * @return the entry count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Packs every .json file inside a config folder into a single bundle.
+     * @param configDir the config folder to pack
+     * @param out the bundle file to write
+     * @return the amount of packed configs
+     * @throws IOException if a config could not be read or the bundle could not be written
+     */
+    public static int pack(File configDir, File out) throws IOException {
+        Path root = configDir.toPath();
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile).filter(path -> path.toString().endsWith(".json")).sorted().collect(Collectors.toList());
+        }
+
+        List<byte[]> keys = new ArrayList<>(files.size());
+        List<byte[]> contents = new ArrayList<>(files.size());
+        for (Path file : files) {
+            byte[] key = getKey(root, file).getBytes(StandardCharsets.UTF_8);
+            if (key.length > 0xFFFF) throw new IOException(String.format("Config path %s is too long!", file));
+            keys.add(key);
+            contents.add(Files.readAllBytes(file));
+        }
+
+        try (OutputStream stream = Files.newOutputStream(out.toPath()); DataOutputStream data = new DataOutputStream(new BufferedOutputStream(stream))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(files.size());
+            int offset = 0;
+            for (int i = 0; i < files.size(); i++) {
+                data.writeShort(keys.get(i).length);
+                data.write(keys.get(i));
+                data.writeInt(offset);
+                data.writeInt(contents.get(i).length);
+                offset += contents.get(i).length;
+            }
+            for (byte[] content : contents) data.write(content);
+        }
+        return files.size();
+    }
+
+    /**
+     * Packs a config folder from the command line, for use in modpack build steps.
+     * @param args the config folder and the bundle file to write
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ConfigBundle <config folder> <bundle file>");
+            System.exit(1);
+        }
+        long time = System.currentTimeMillis();
+        int count = pack(new File(args[0]), new File(args[1]));
+        System.out.printf("Packed %d configs into %s in %d ms%n", count, args[1], System.currentTimeMillis() - time);
+    }
+}
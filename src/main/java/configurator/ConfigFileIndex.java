@@ -0,0 +1,156 @@
+package configurator;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * An index of every file and folder inside the config folder, built by walking it once.
+ * </p><p>
+ * All config loading steps ask this index instead of the file system, so resolving a config file costs one map lookup
+ * instead of several stat calls. {@link ConfigWriter} keeps the index up to date when it writes or deletes files.
+ * </p>
+ * Paths outside of the indexed folder are always checked on disk.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigFileIndex {
+    private static final Map<Path, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static volatile Path root;
+
+    /**
+     * Walks the config folder and rebuilds the index. Called at the start of config loading.
+     */
+    public static synchronized void scan() {
+        long time = System.currentTimeMillis();
+        Path dir = ConfigWriter.CONFIG_DIR.toPath().normalize();
+        ENTRIES.clear();
+        if (Files.isDirectory(dir)) {
+            try {
+                Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) {
+                        ENTRIES.put(path.normalize(), new Entry(attributes));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                        ENTRIES.put(path.normalize(), new Entry(attributes));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path path, IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                Configurator.LOGGER.error(e);
+                ENTRIES.clear();
+                root = null;
+                return;
+            }
+        }
+        root = dir;
+        Configurator.LOGGER.debug("Indexed {} config paths in {} ms", ENTRIES.size(), System.currentTimeMillis() - time);
+    }
+
+    /**
+     * Drops the index, the next lookup will walk the config folder again.
+     */
+    public static synchronized void invalidate() {
+        root = null;
+        ENTRIES.clear();
+    }
+
+    /**
+     * Gets the cached attributes of a file or folder.
+     * @param file the file to look up
+     * @return the attributes, or null if the file does not exist
+     */
+    @Nullable
+    public static Entry get(File file) {
+        Path path = file.toPath().normalize();
+        if (!isIndexed(path)) return Entry.of(path);
+        return ENTRIES.get(path);
+    }
+
+    /**
+     * Checks if a file or folder exists.
+     * @param file the file to check
+     * @return if the file exists
+     */
+    public static boolean exists(File file) {
+        return get(file) != null;
+    }
+
+    /**
+     * Checks if a folder exists.
+     * @param file the folder to check
+     * @return if the folder exists and is a folder
+     */
+    public static boolean isDirectory(File file) {
+        Entry entry = get(file);
+        return entry != null && entry.directory;
+    }
+
+    /**
+     * Reads the attributes of a file from disk again after it was written, created or deleted.
+     * @param file the file that changed
+     */
+    public static void update(File file) {
+        Path path = file.toPath().normalize();
+        if (!isIndexed(path)) return;
+        Entry entry = Entry.of(path);
+        if (entry != null) ENTRIES.put(path, entry);
+        else ENTRIES.remove(path);
+    }
+
+    private static boolean isIndexed(Path path) {
+        if (root == null) scan();
+        Path dir = root;
+        return dir != null && path.startsWith(dir);
+    }
+
+    /**
+     * The cached attributes of an indexed path.
+     */
+    public static class Entry {
+        public final long size;
+        public final long lastModified;
+        public final boolean directory;
+
+        protected Entry(BasicFileAttributes attributes) {
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.directory = attributes.isDirectory();
+        }
+
+        protected Entry(long size, long lastModified, boolean directory) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.directory = directory;
+        }
+
+        @Nullable
+        protected static Entry of(Path path) {
+            try {
+                return new Entry(Files.readAttributes(path, BasicFileAttributes.class));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
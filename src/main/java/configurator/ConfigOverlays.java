@@ -0,0 +1,200 @@
+package configurator;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import configurator.api.ArrayConfigValue;
+import configurator.api.Config;
+import configurator.api.ConfigCategory;
+import configurator.api.ConfigLayer;
+import configurator.api.ConfigValue;
+import configurator.api.JsonConfigValue;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>
+ * Resolves the {@link ConfigLayer}s of a config into its values.
+ * </p><p>
+ * Layers are, from lowest to highest priority: the builder defaults, the config file (or bundle entry),
+ * the override file at the same path inside {@link ConfigOverlays#OVERRIDE_DIR}, and finally system properties
+ * and environment variables.
+ * </p><p>
+ * A value in config/mymod/common/balance.json at general.speed is overridden by -Dconfigurator.value.mymod.common.balance.general.speed
+ * or by the environment variable CONFIGURATOR_VALUE_MYMOD__COMMON__BALANCE__GENERAL__SPEED. System properties win over the environment.
+ * </p><p>
+ * Environment variable names join the parts of the path with two underscores, upper case the letters and turn every other
+ * character into an underscore. Names that only differ in case or punctuation can only be told apart with system properties.
+ * </p>
+ * Layers are only walked while loading, every value ends up holding its resolved value, so reads stay a single field access.
+ * The file layer underneath values that an override or property replaced is kept, so writing the config file never makes
+ * an override permanent, see {@link ConfigOverlays#getFileValue(ConfigValue)}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigOverlays {
+    /** the folder holding the per-server override files */
+    public static final File OVERRIDE_DIR = new File(ConfigWriter.CONFIG_DIR, "configurator-overrides");
+    /** the prefix of system properties that override config values */
+    public static final String PROPERTY_PREFIX = "configurator.value.";
+    /** the prefix of environment variables that override config values */
+    public static final String ENV_PREFIX = "CONFIGURATOR_VALUE_";
+
+    private static final JsonParser PARSER = new JsonParser();
+    /** the file layer of every value that a higher layer replaced */
+    private static final Map<ConfigValue<?>, JsonElement> FILE_VALUES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Gets the override file of a config.
+     * @param config the config
+     * @return the override file, which might not exist
+     */
+    public static File getOverrideFile(Config config) {
+        return new File(OVERRIDE_DIR, ConfigBundle.getKey(config));
+    }
+
+    /**
+     * Gets the json the config file holds for a value that the override file, a system property or an environment variable replaced.
+     * @param value the value
+     * @return the file layer of the value, its default if the file does not hold it, or null if the value is not replaced
+     */
+    @Nullable
+    public static JsonElement getFileValue(ConfigValue<?> value) {
+        return FILE_VALUES.get(value);
+    }
+
+    /**
+     * Sets the json the config file holds for a replaced value, used to put back a copied value.
+     * @param value the value
+     * @param fileValue the file layer of the value, or null if the value is not replaced
+     */
+    public static void setFileValue(ConfigValue<?> value, @Nullable JsonElement fileValue) {
+        if (fileValue != null) FILE_VALUES.put(value, fileValue);
+        else FILE_VALUES.remove(value);
+    }
+
+    /**
+     * Resolves every value of a config from its layers. Values not defined by any layer go back to their default.
+     * @param config the config to resolve
+     * @param file the parsed config file, or null if the config has no file
+     */
+    public static void resolve(Config config, @Nullable JsonObject file) {
+        resolve(config, config.categories, file);
+    }
+
+    /**
+     * Resolves the values of a single top-level category of a config, used for the shards of sharded configs.
+     * @param config the config to resolve
+     * @param category the top-level category to resolve
+     * @param file the parsed shard file, or null if the shard has no file
+     */
+    public static void resolve(Config config, ConfigCategory category, @Nullable JsonObject file) {
+        resolve(config, Collections.singletonList(category), file);
+    }
+
+    private static void resolve(Config config, List<ConfigCategory> categories, @Nullable JsonObject file) {
+        File overrideFile = getOverrideFile(config);
+        ConfigStorage storage = config.getStorage();
+        JsonObject override = storage.exists(overrideFile) ? ConfigWriter.readConfigJson(storage, overrideFile) : null;
+
+        Map<String, String> properties = getProperties();
+        String path = null;
+        if (!properties.isEmpty()) {
+            String key = ConfigBundle.getKey(config);
+            path = key.substring(0, key.length() - ".json".length()).replace('/', '.');
+        }
+
+        for (ConfigCategory category : categories) resolve(category, file, override, path, properties);
+    }
+
+    private static void resolve(ConfigCategory category, @Nullable JsonObject file, @Nullable JsonObject override, @Nullable String path, Map<String, String> properties) {
+        JsonObject fileCategory = getCategory(file, category);
+        JsonObject overrideCategory = getCategory(override, category);
+        String categoryPath = path != null ? path + "." + category.getName() : null;
+
+        for (ConfigValue<?> value : category.getValues()) {
+            String property = categoryPath != null ? getProperty(properties, categoryPath + "." + value.getName()) : null;
+            JsonElement fileValue = fileCategory != null ? fileCategory.get(value.getName()) : null;
+            if (property != null && apply(value, parseProperty(value, property), ConfigLayer.PROPERTY)
+                || overrideCategory != null && apply(value, overrideCategory.get(value.getName()), ConfigLayer.OVERRIDE)) {
+                JsonElement defaultValue = fileValue == null ? ConfigSchema.toJson(value.getDefault()) : null;
+                FILE_VALUES.put(value, fileValue != null ? fileValue : defaultValue != null ? defaultValue : JsonNull.INSTANCE);
+                continue;
+            }
+            FILE_VALUES.remove(value);
+            if (fileValue != null && apply(value, fileValue, ConfigLayer.FILE)) continue;
+            value.reset();
+        }
+
+        for (ConfigCategory subCategory : category.getSubCategories()) resolve(subCategory, fileCategory, overrideCategory, categoryPath, properties);
+    }
+
+    @Nullable
+    private static JsonObject getCategory(@Nullable JsonObject json, ConfigCategory category) {
+        if (json == null) return null;
+        JsonElement element = json.get(category.getName());
+        return element != null && element.isJsonObject() ? element.getAsJsonObject() : null;
+    }
+
+    private static boolean apply(ConfigValue<?> value, @Nullable JsonElement element, ConfigLayer layer) {
+        if (element == null) return false;
+        try {
+            return ConfigWriter.readValue(value, element, layer);
+        } catch (RuntimeException e) {
+            Configurator.LOGGER.warn("Ignoring invalid {} value for {}: {}", layer.name().toLowerCase(Locale.ROOT), value.getName(), element);
+            return false;
+        }
+    }
+
+    @Nullable
+    private static JsonElement parseProperty(ConfigValue<?> value, String property) {
+        if (!(value instanceof JsonConfigValue) && !(value instanceof ArrayConfigValue)) return new JsonPrimitive(property);
+        try {
+            return PARSER.parse(property);
+        } catch (RuntimeException e) {
+            Configurator.LOGGER.warn("Ignoring invalid json property for {}: {}", value.getName(), property);
+            return null;
+        }
+    }
+
+    /**
+     * Collects the config overrides from the environment and system properties, keyed by their full variable or property name.
+     * @return the property overrides
+     */
+    private static Map<String, String> getProperties() {
+        Map<String, String> properties = new HashMap<>();
+        for (Map.Entry<String, String> env : System.getenv().entrySet())
+            if (env.getKey().startsWith(ENV_PREFIX)) properties.put(env.getKey(), env.getValue());
+        for (String name : System.getProperties().stringPropertyNames())
+            if (name.startsWith(PROPERTY_PREFIX)) properties.put(name, System.getProperty(name));
+        return properties;
+    }
+
+    @Nullable
+    private static String getProperty(Map<String, String> properties, String path) {
+        String property = properties.get(PROPERTY_PREFIX + path);
+        return property != null ? property : properties.get(toEnvironmentName(path));
+    }
+
+    private static String toEnvironmentName(String path) {
+        StringBuilder name = new StringBuilder(ENV_PREFIX);
+        for (char c : path.toCharArray()) {
+            if (c == '.') name.append("__");
+            else if (c >= 'a' && c <= 'z') name.append(Character.toUpperCase(c));
+            else if (c >= 'A' && c <= 'Z' || c >= '0' && c <= '9') name.append(c);
+            else name.append('_');
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,498 @@
+package configurator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import configurator.api.ArrayConfigValue;
+import configurator.api.CompactJsonArray;
+import configurator.api.CompactJsonObject;
+import configurator.api.Config;
+import configurator.api.ConfigConstraint;
+import configurator.api.ConfigValue;
+import configurator.api.JsonConfigValue;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.world.World;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Lets players override the values marked with {@link Config.Builder#perPlayer(ConfigValue)}, read with {@link ConfigValue#getFor(UUID)}.
+ * </p><p>
+ * Overrides are sparse, a player only stores the values they changed. They live in one binary file per player in
+ * {@link ConfigPlayers#FOLDER} inside the world config folder, which is read when the player logs in and written when
+ * they log out or the world saves, so only online players with overrides take memory. Players without overrides have no file.
+ * </p><p>
+ * Overrides are checked against the constraints of their value when they are set, and stored overrides that no longer pass
+ * them are not applied.
+ * </p>
+ * Overrides of values that are no longer registered are kept in the file as they are, so removing a mod or value does not
+ * throw away what players set.
+ */
+@Mod.EventBusSubscriber(modid = Configurator.MOD_ID)
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigPlayers {
+    /** the folder inside the world config folder that holds the overrides of each player */
+    public static final String FOLDER = "players";
+    private static final int MAGIC = 0x43504C59;
+    private static final int VERSION = 1;
+    private static final byte BOOLEAN = 0, BYTE = 1, SHORT = 2, INT = 3, LONG = 4, FLOAT = 5, DOUBLE = 6, STRING = 7, JSON = 8;
+
+    /** the per-player values by their key, see {@link ConfigPlayers#getKey(Config, ConfigValue)} */
+    private static final Map<String, ConfigValue<?>> VALUES = new ConcurrentHashMap<>();
+    private static final Map<ConfigValue<?>, String> KEYS = new ConcurrentHashMap<>();
+    /** the config of every per-player value, to check overrides against its constraints */
+    private static final Map<ConfigValue<?>, Config> CONFIGS = new ConcurrentHashMap<>();
+    /** the overrides of every online player, players without overrides share {@link Overrides#EMPTY} */
+    private static final Map<UUID, Overrides> PLAYERS = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the per-player values of a config, called when the config is built.
+     * @param config the config
+     */
+    public static void register(Config config) {
+        for (ConfigValue<?> value : config.getPlayerValues()) {
+            String key = getKey(config, value);
+            ConfigValue<?> previous = VALUES.put(key, value);
+            if (previous != null && previous != value) {
+                KEYS.remove(previous);
+                CONFIGS.remove(previous);
+            }
+            KEYS.put(value, key);
+            CONFIGS.put(value, config);
+        }
+    }
+
+    /**
+     * Checks if a value is scoped per player.
+     * @param value the value
+     * @return if players can override the value
+     */
+    public static boolean isPerPlayer(ConfigValue<?> value) {
+        return KEYS.containsKey(value);
+    }
+
+    /**
+     * Checks if values of the type of the given value can be overridden per player.
+     * @param value the stored value
+     * @return if the value is a boolean, a number, a string or json
+     */
+    public static boolean isSupported(@Nullable Object value) {
+        return value instanceof Boolean || value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long
+                || value instanceof Float || value instanceof Double || value instanceof String || value instanceof JsonElement;
+    }
+
+    /**
+     * Gets the value a player sees, same as {@link ConfigValue#getFor(UUID)}.
+     * @param value the value
+     * @param player the UUID of the player
+     * @param <T> the stored type
+     * @return the override of the player, or the stored value if the player is offline or has no override
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static <T> T get(ConfigValue<T> value, UUID player) {
+        Overrides overrides = PLAYERS.get(player);
+        if (overrides != null) {
+            Object override = overrides.find(value);
+            if (override != null) return (T)copy(override);
+        }
+        return value.get();
+    }
+
+    /**
+     * Gets the override of a player, without falling back to the stored value.
+     * @param value the value
+     * @param player the UUID of the player
+     * @param <T> the stored type
+     * @return the override, or null if the player has none or is offline
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static <T> T getOverride(ConfigValue<T> value, UUID player) {
+        Overrides overrides = PLAYERS.get(player);
+        return overrides != null ? (T)copy(overrides.find(value)) : null;
+    }
+
+    /**
+     * copies json overrides, so changing a returned tree does not change the override every caller sees.
+     */
+    @Nullable
+    private static Object copy(@Nullable Object override) {
+        // gson 2.8.0 does not expose JsonElement.deepCopy, the compact form copies the tree just as well
+        if (override instanceof JsonObject) return CompactJsonObject.of((JsonObject)override).toJson();
+        if (override instanceof JsonArray) return CompactJsonArray.of((JsonArray)override).toJson();
+        return override;
+    }
+
+    /**
+     * <p>
+     * Sets or removes the override of a player.
+     * </p>
+     * Overrides of online players are written when they log out or the world saves, overrides of offline players are written right away.
+     * @param value the per-player value
+     * @param player the UUID of the player
+     * @param override the new override, or null to remove it
+     * @param <T> the stored type
+     * @throws IllegalArgumentException if the value is not scoped per player, or the override does not fit it or breaks one of its constraints
+     */
+    public static synchronized <T> void set(ConfigValue<T> value, UUID player, @Nullable T override) {
+        String key = KEYS.get(value);
+        if (key == null) throw new IllegalArgumentException(String.format("Value '%s' is not scoped per player", value.getPath()));
+        String problem = override != null ? check(value, override) : null;
+        if (problem != null) throw new IllegalArgumentException(String.format("Override %s does not fit value '%s': %s", override, value.getPath(), problem));
+        Overrides current = PLAYERS.get(player);
+        if (current != null) {
+            PLAYERS.put(player, current.with(value, key, override));
+            return;
+        }
+        Overrides next = read(player).with(value, key, override);
+        if (next.dirty) write(player, next);
+    }
+
+    /**
+     * Reads the overrides of a player into memory.
+     * @param player the UUID of the player
+     */
+    public static synchronized void login(UUID player) {
+        PLAYERS.put(player, read(player));
+    }
+
+    /**
+     * Writes the changed overrides of a player and drops them from memory.
+     * @param player the UUID of the player
+     */
+    public static synchronized void logout(UUID player) {
+        Overrides overrides = PLAYERS.remove(player);
+        if (overrides != null && overrides.dirty) write(player, overrides);
+    }
+
+    /**
+     * Writes the changed overrides of every online player.
+     */
+    public static synchronized void saveAll() {
+        for (Map.Entry<UUID, Overrides> entry : PLAYERS.entrySet()) {
+            Overrides overrides = entry.getValue();
+            if (!overrides.dirty) continue;
+            write(entry.getKey(), overrides);
+            entry.setValue(overrides.saved());
+        }
+    }
+
+    /**
+     * Writes the changed overrides of every online player and drops all of them from memory, called before the world is unloaded.
+     */
+    public static synchronized void unloadAll() {
+        saveAll();
+        PLAYERS.clear();
+    }
+
+    /**
+     * Gets the amount of overrides held in memory, for diagnostics.
+     * @return the amount of overrides of online players
+     */
+    public static int getLoadedOverrides() {
+        int count = 0;
+        for (Overrides overrides : PLAYERS.values()) count += overrides.values.length;
+        return count;
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (!KEYS.isEmpty()) login(event.player.getUniqueID());
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        logout(event.player.getUniqueID());
+    }
+
+    @SubscribeEvent
+    public static void onWorldSave(WorldEvent.Save event) {
+        // every dimension saves on its own, the overrides are written along with the overworld
+        World world = event.getWorld();
+        if (!world.isRemote && world.provider.getDimension() == 0) saveAll();
+    }
+
+    private static String getKey(Config config, ConfigValue<?> value) {
+        return ConfigBundle.getKey(config) + "#" + value.getPath();
+    }
+
+    /**
+     * checks an override against the type and the constraints of its value.
+     * @return the problem with the override, or null if it fits
+     */
+    @Nullable
+    private static String check(ConfigValue<?> value, Object override) {
+        if (!accepts(value, override)) return "not of the type of the value";
+        Config config = CONFIGS.get(value);
+        if (config == null) return null;
+        for (ConfigConstraint<?> constraint : config.getConstraints()) {
+            if (constraint.getValue() != value) continue;
+            String problem = check(constraint, override);
+            if (problem != null) return problem;
+        }
+        return null;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static <T> String check(ConfigConstraint<T> constraint, Object override) {
+        return constraint.check((T)override);
+    }
+
+    private static boolean accepts(ConfigValue<?> value, Object override) {
+        if (value instanceof JsonConfigValue) return override instanceof JsonObject;
+        if (value instanceof ArrayConfigValue) return override instanceof JsonArray;
+        Object current = value.getDefault();
+        return current != null && current.getClass() == override.getClass();
+    }
+
+    @Nullable
+    private static File getFile(UUID player) {
+        File worldDir = ConfigWorlds.getWorldDir();
+        return worldDir != null ? new File(new File(worldDir, FOLDER), player + ".bin") : null;
+    }
+
+    private static Overrides read(UUID player) {
+        File file = getFile(player);
+        if (file == null || !file.isFile()) return Overrides.EMPTY;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Unknown player override format");
+            int version = in.readUnsignedByte();
+            if (version > VERSION) throw new IOException("Player overrides were written by a newer version, format " + version);
+            int count = in.readInt();
+            ConfigValue<?>[] values = new ConfigValue<?>[count];
+            Object[] overrides = new Object[count];
+            Map<String, Object> unknown = null;
+            int known = 0;
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                Object override = readValue(in);
+                ConfigValue<?> value = VALUES.get(key);
+                String problem = value != null ? check(value, override) : null;
+                if (value != null && problem == null) {
+                    values[known] = value;
+                    overrides[known++] = override;
+                } else {
+                    if (problem != null) Configurator.LOGGER.warn("Ignoring the config override {} of player {} for '{}': {}", override, player, value.getPath(), problem);
+                    if (unknown == null) unknown = new LinkedHashMap<>();
+                    unknown.put(key, override);
+                }
+            }
+            return new Overrides(Arrays.copyOf(values, known), Arrays.copyOf(overrides, known), unknown, false);
+        } catch (IOException | RuntimeException e) {
+            Configurator.LOGGER.error("Could not read the config overrides of player {}", player);
+            Configurator.LOGGER.error(e);
+            return Overrides.EMPTY;
+        }
+    }
+
+    private static void write(UUID player, Overrides overrides) {
+        File file = getFile(player);
+        if (file == null) {
+            Configurator.LOGGER.warn("No world is loaded, the config overrides of player {} were not saved", player);
+            return;
+        }
+        try {
+            if (overrides.isEmpty()) {
+                Files.deleteIfExists(file.toPath());
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(overrides.values.length + (overrides.unknown != null ? overrides.unknown.size() : 0));
+            for (int i = 0; i < overrides.values.length; i++) {
+                out.writeUTF(KEYS.getOrDefault(overrides.values[i], ""));
+                writeValue(out, overrides.overrides[i]);
+            }
+            if (overrides.unknown != null) {
+                for (Map.Entry<String, Object> entry : overrides.unknown.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    writeValue(out, entry.getValue());
+                }
+            }
+            replace(file, bytes.toByteArray());
+        } catch (IOException e) {
+            Configurator.LOGGER.error("Could not write the config overrides of player {}", player);
+            Configurator.LOGGER.error(e);
+        }
+    }
+
+    private static void replace(File file, byte[] content) throws IOException {
+        File dir = file.getParentFile();
+        if (!ConfigWriter.initFolder(dir)) throw new IOException("Could not make folder " + dir.getPath());
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            Files.write(temp.toPath(), content);
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte)value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short)value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer)value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long)value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float)value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double)value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String)value);
+        } else {
+            out.writeByte(JSON);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case BOOLEAN: return in.readBoolean();
+            case BYTE: return in.readByte();
+            case SHORT: return in.readShort();
+            case INT: return in.readInt();
+            case LONG: return in.readLong();
+            case FLOAT: return in.readFloat();
+            case DOUBLE: return in.readDouble();
+            case STRING: return readString(in);
+            case JSON: return new JsonParser().parse(readString(in));
+            default: throw new IOException("Unknown player override type " + type);
+        }
+    }
+
+    /**
+     * writes a string as length-prefixed UTF-8, {@link DataOutputStream#writeUTF(String)} only fits 64 KB.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The overrides of one player. Immutable, setting an override replaces the whole object, so reads need no lock.
+     */
+    private static class Overrides {
+        private static final Overrides EMPTY = new Overrides(new ConfigValue<?>[0], new Object[0], null, false);
+
+        private final ConfigValue<?>[] values;
+        private final Object[] overrides;
+        /** overrides of values that are not registered, kept to be written back */
+        @Nullable
+        private final Map<String, Object> unknown;
+        /** if these overrides changed since they were read */
+        private final boolean dirty;
+
+        private Overrides(ConfigValue<?>[] values, Object[] overrides, @Nullable Map<String, Object> unknown, boolean dirty) {
+            this.values = values;
+            this.overrides = overrides;
+            this.unknown = unknown;
+            this.dirty = dirty;
+        }
+
+        @Nullable
+        private Object find(ConfigValue<?> value) {
+            // players override a handful of values, a scan beats hashing
+            for (int i = 0; i < values.length; i++) if (values[i] == value) return overrides[i];
+            return null;
+        }
+
+        private boolean isEmpty() {
+            return values.length == 0 && (unknown == null || unknown.isEmpty());
+        }
+
+        /**
+         * sets or removes the override of a value. a kept override of the same key that was not applied is dropped,
+         * so the file never holds the key twice.
+         */
+        private Overrides with(ConfigValue<?> value, String key, @Nullable Object override) {
+            Map<String, Object> unknown = this.unknown;
+            if (unknown != null && unknown.containsKey(key)) {
+                unknown = new LinkedHashMap<>(unknown);
+                unknown.remove(key);
+                if (unknown.isEmpty()) unknown = null;
+            }
+            boolean dropped = unknown != this.unknown;
+            int index = -1;
+            for (int i = 0; i < values.length && index < 0; i++) if (values[i] == value) index = i;
+            if (index < 0 && override == null) return dropped ? new Overrides(values, overrides, unknown, true) : this;
+            if (index >= 0 && override != null) {
+                if (override.equals(overrides[index]) && !dropped) return this;
+                Object[] overrides = this.overrides.clone();
+                overrides[index] = override;
+                return new Overrides(values, overrides, unknown, true);
+            }
+            if (override != null) {
+                ConfigValue<?>[] values = Arrays.copyOf(this.values, this.values.length + 1);
+                Object[] overrides = Arrays.copyOf(this.overrides, this.overrides.length + 1);
+                values[values.length - 1] = value;
+                overrides[overrides.length - 1] = override;
+                return new Overrides(values, overrides, unknown, true);
+            }
+            ConfigValue<?>[] values = new ConfigValue<?>[this.values.length - 1];
+            Object[] overrides = new Object[values.length];
+            System.arraycopy(this.values, 0, values, 0, index);
+            System.arraycopy(this.values, index + 1, values, index, values.length - index);
+            System.arraycopy(this.overrides, 0, overrides, 0, index);
+            System.arraycopy(this.overrides, index + 1, overrides, index, overrides.length - index);
+            return new Overrides(values, overrides, unknown, true);
+        }
+
+        private Overrides saved() {
+            return isEmpty() ? EMPTY : new Overrides(values, overrides, unknown, false);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package configurator;
+
+import configurator.api.Config;
+import configurator.api.ConfigCategory;
+import configurator.api.ConfigValue;
+import configurator.api.SerializedConfigValue;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * <p>
+ * Opt-in counting of {@link ConfigValue#get()} and {@link SerializedConfigValue#getReal()} calls per value.
+ * </p><p>
+ * Reads are counted in striped counters, so hot values read from many threads do not contend.
+ * While profiling is disabled a read only checks one flag.
+ * </p>
+ * Enable it with the profile_reads option of the Configurator config or with {@link ConfigProfiler#setEnabled(boolean)}.
+ * The report is written to {@link ConfigProfiler#REPORT_FILE} when the game closes.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigProfiler {
+    /** the file the read report is written to on shutdown */
+    public static final File REPORT_FILE = new File("configurator-profile.txt");
+
+    private static volatile boolean enabled = false;
+    private static boolean hooked = false;
+
+    /**
+     * Checks if reads are being counted.
+     * @return if profiling is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns read counting on or off. Counts are kept while profiling is off.
+     * @param enabled if reads should be counted
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        ConfigProfiler.enabled = enabled;
+        if (enabled && !hooked) {
+            hooked = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> writeReport(REPORT_FILE), "Configurator Profiler"));
+        }
+    }
+
+    /**
+     * Sets the read counts of every value in a config back to zero.
+     * @param config the config to reset
+     */
+    public static void reset(Config config) {
+        config.forEachValue(ConfigValue::resetReads);
+    }
+
+    /**
+     * Creates a report of the read counts of every value in a config.
+     * @param config the config to report
+     * @return the report
+     */
+    public static String dump(Config config) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(ConfigWriter.getConfigFile(config).getPath()).append('\n');
+        for (ConfigCategory category : config.categories) dump(builder, category, 1);
+        return builder.toString();
+    }
+
+    /**
+     * Creates a report of the read counts of every value in a category and its sub categories.
+     * @param category the category to report
+     * @return the report
+     */
+    public static String dump(ConfigCategory category) {
+        StringBuilder builder = new StringBuilder();
+        dump(builder, category, 0);
+        return builder.toString();
+    }
+
+    private static void dump(StringBuilder builder, ConfigCategory category, int depth) {
+        indent(builder, depth).append(category.getName()).append('\n');
+        for (ConfigValue<?> value : category.getValues()) {
+            long reads = value.getReads();
+            indent(builder, depth + 1).append(value.getName()).append(": ").append(reads);
+            if (value instanceof SerializedConfigValue) {
+                long realReads = ((SerializedConfigValue<?>)value).getRealReads();
+                builder.append(", real: ").append(realReads);
+                reads += realReads;
+            }
+            if (reads == 0) builder.append(" (never read)");
+            builder.append('\n');
+        }
+        for (ConfigCategory subCategory : category.getSubCategories()) dump(builder, subCategory, depth + 1);
+    }
+
+    private static StringBuilder indent(StringBuilder builder, int depth) {
+        for (int i = 0; i < depth; i++) builder.append("  ");
+        return builder;
+    }
+
+    /**
+     * Writes the read report of every registered config into a file.
+     * @param file the file to write
+     */
+    public static void writeReport(File file) {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath())) {
+            for (Config config : Configurator.CONFIGS.snapshot()) writer.write(dump(config));
+        } catch (IOException e) {
+            Configurator.LOGGER.error(e);
+        }
+    }
+}
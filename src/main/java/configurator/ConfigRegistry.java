@@ -0,0 +1,99 @@
+package configurator;
+
+import configurator.api.Config;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A thread-safe registry of {@link Config}s that keeps registration order.
+ * </p>
+ * Configs can be registered and looked up from any thread, and the load phase iterates over a snapshot,
+ * so registering or loading configs while another thread loads never fails or loses a registration.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigRegistry {
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Config, Long> sequences = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Config> ordered = new ConcurrentSkipListMap<>();
+    private final Map<String, Config> byKey = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the key a config is looked up by.
+     * @param folder the folder of the config
+     * @param name the file name of the config
+     * @param type the type category of the config
+     * @return the lookup key
+     */
+    public static String getKey(String folder, String name, Config.Type type) {
+        return folder + "/" + type.name() + "/" + name;
+    }
+
+    private static String getKey(Config config) {
+        return getKey(config.folder, config.name, config.type);
+    }
+
+    /**
+     * Registers a config after all previously registered configs. Registering the same config twice does nothing.
+     * @param config the config to register
+     * @return if the config was not already registered
+     */
+    public boolean register(Config config) {
+        boolean[] added = new boolean[1];
+        sequences.computeIfAbsent(config, c -> {
+            long id = sequence.getAndIncrement();
+            ordered.put(id, c);
+            added[0] = true;
+            return id;
+        });
+        if (added[0] && byKey.putIfAbsent(getKey(config), config) != null)
+            Configurator.LOGGER.warn("Config {} is registered more than once with the same file!", getKey(config));
+        return added[0];
+    }
+
+    /**
+     * Checks if a config is registered.
+     * @param config the config to check
+     * @return if the config is registered
+     */
+    public boolean contains(Config config) {
+        return sequences.containsKey(config);
+    }
+
+    /**
+     * Looks up a registered config by its file.
+     * @param folder the folder of the config
+     * @param name the file name of the config
+     * @param type the type category of the config
+     * @return the config, or null if no such config is registered
+     */
+    @Nullable
+    public Config get(String folder, String name, Config.Type type) {
+        return byKey.get(getKey(folder, name, type));
+    }
+
+    /**
+     * Copies the registered configs in registration order. Later changes to the registry do not affect the copy.
+     * @return the registered configs
+     */
+    public List<Config> snapshot() {
+        return new ArrayList<>(ordered.values());
+    }
+
+    /**
+     * Gets the amount of registered configs.
+     * @return the registered config count
+     */
+    public int size() {
+        return sequences.size();
+    }
+}
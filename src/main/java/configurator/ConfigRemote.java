@@ -0,0 +1,325 @@
+package configurator;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import configurator.api.Config;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ * Downloads configs and bundles from HTTP servers, so a fleet of servers can share one set of config files.
+ * </p><p>
+ * Every download is a conditional request using the ETag and Last-Modified of the last applied copy, so an unchanged
+ * file costs a single 304 round trip. A download is checked against the Digest or Content-Digest header of the
+ * response and against a pinned SHA-256, parsed, and then moved over the local file in one atomic step.
+ * The local file doubles as the cache, if the server can not be reached the last applied copy is used.
+ * </p><p>
+ * A remote bundle is set with the {@link ConfigRemote#BUNDLE_PROPERTY} system property and is fetched once on startup.
+ * Remote configs are set with {@link Config.Builder#withRemote(String)} and are fetched before they load,
+ * and again every {@link ConfigRemote#REFRESH_PROPERTY} seconds if that property is set.
+ * </p>
+ * The cache metadata keeps the SHA-256 of the last applied body, so a local copy rewritten after it was applied, by a
+ * migration, a save or an edit, is only replaced once the remote file itself changes.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigRemote {
+    /** system property with the url of a remote bundle */
+    public static final String BUNDLE_PROPERTY = "configurator.remote.bundle";
+    /** system property with the pinned SHA-256 of the remote bundle, in hex */
+    public static final String BUNDLE_SHA256_PROPERTY = "configurator.remote.bundle.sha256";
+    /** system property with the refresh interval of remote configs in seconds */
+    public static final String REFRESH_PROPERTY = "configurator.remote.refresh";
+    /** the folder holding the downloaded bundle and the cache metadata of every remote file */
+    public static final File CACHE_DIR = new File(ConfigWriter.CONFIG_DIR, "configurator-cache");
+    private static final String BUNDLE_FILE = "remote.bundle";
+    private static final int TIMEOUT = 5000;
+    private static final int MAX_SIZE = 64 << 20;
+
+    private static ScheduledExecutorService refresher;
+
+    public enum Result {
+        /** a new copy was downloaded and applied */
+        UPDATED,
+        /** the local copy is up to date */
+        NOT_MODIFIED,
+        /** the server could not be reached or sent an invalid file, the local copy was kept */
+        FAILED
+    }
+
+    /**
+     * Fetches the remote bundle set by {@link ConfigRemote#BUNDLE_PROPERTY}.
+     * @return the local copy of the bundle, which might not exist if the bundle was never downloaded
+     */
+    public static File fetchBundle() {
+        File file = new File(CACHE_DIR, BUNDLE_FILE);
+        String url = System.getProperty(BUNDLE_PROPERTY);
+        if (url != null) {
+            fetch(url, file, getMetaFile(BUNDLE_FILE), System.getProperty(BUNDLE_SHA256_PROPERTY), bytes -> {
+                try {
+                    ConfigBundle.open(ByteBuffer.wrap(bytes));
+                    return true;
+                } catch (IOException | RuntimeException e) {
+                    return false;
+                }
+            });
+        }
+        return file;
+    }
+
+    /**
+     * Fetches the remote copy of a config into its config file. Called with the config locked, the file is written
+     * under its {@link ConfigSync} lock.
+     * @param config the config, which must have a remote url
+     * @return the result of the fetch
+     */
+    public static Result fetch(Config config) {
+        String url = config.getRemoteUrl();
+        if (url == null) throw new IllegalArgumentException(String.format("Config %s has no remote url!", config.name));
+        Path path = config.getStorage().getPath(ConfigWriter.getGlobalConfigFile(config));
+        if (path == null) {
+            Configurator.LOGGER.warn("Config {} does not keep its files on disk, not fetching {}", config.name, url);
+            return Result.FAILED;
+        }
+        try (ConfigTracer.Span span = ConfigTracer.begin("fetch", config); ConfigSync.Lock lock = ConfigSync.lock(config)) {
+            Result result = fetch(url, path.toFile(), getMetaFile(ConfigBundle.getKey(config)), config.getRemoteSha256(), ConfigRemote::isJsonObject);
+            // other processes reload a fetched file like any other write
+            if (result == Result.UPDATED) ConfigSync.changed(config);
+            return result;
+        }
+    }
+
+    /**
+     * Starts refreshing remote configs on a background thread, if {@link ConfigRemote#REFRESH_PROPERTY} is set.
+     */
+    public static synchronized void startRefreshing() {
+        if (refresher != null) return;
+        long interval = Long.getLong(REFRESH_PROPERTY, 0);
+        if (interval <= 0) return;
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Configurator Remote");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(ConfigRemote::refresh, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static void refresh() {
+        for (Config config : Configurator.CONFIGS.snapshot()) {
+            if (config.getRemoteUrl() == null || !config.isLoaded()) continue;
+            try {
+                // loads, saves and edits of the config wait until the fetched file is written and read, in this and other processes
+                synchronized (config) {
+                    try (ConfigSync.Lock lock = ConfigSync.lock(config)) {
+                        if (fetch(config) == Result.UPDATED) Configurator.reloadConfig(config);
+                    }
+                }
+            } catch (RuntimeException e) {
+                Configurator.LOGGER.error("Could not refresh remote config {}", config.name);
+                Configurator.LOGGER.error(e);
+            }
+        }
+    }
+
+    /**
+     * Downloads a file if it changed since the last download, and atomically replaces the local copy with it.
+     * @param url the url to download
+     * @param file the local copy
+     * @param metaFile the file holding the cache metadata of the local copy
+     * @param sha256 the pinned SHA-256 of the file in hex, or null to only check the digest headers
+     * @param validator checks the downloaded content before it is applied
+     * @return the result of the fetch
+     */
+    public static Result fetch(String url, File file, File metaFile, @Nullable String sha256, Predicate<byte[]> validator) {
+        long time = System.currentTimeMillis();
+        Properties meta = readMeta(metaFile, file);
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection)new URL(url).openConnection();
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            connection.setUseCaches(false);
+            connection.setRequestProperty("User-Agent", Configurator.MOD_ID);
+            if (meta.getProperty("etag") != null) connection.setRequestProperty("If-None-Match", meta.getProperty("etag"));
+            if (meta.getProperty("last-modified") != null) connection.setRequestProperty("If-Modified-Since", meta.getProperty("last-modified"));
+
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Configurator.LOGGER.debug("Remote file {} is not modified", url);
+                return Result.NOT_MODIFIED;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                Configurator.LOGGER.warn("Could not fetch remote file {}: HTTP {}, keeping the local copy", url, status);
+                return Result.FAILED;
+            }
+
+            byte[] content;
+            try (InputStream stream = connection.getInputStream()) {
+                content = readFully(stream, connection.getContentLengthLong());
+            }
+            byte[] hash = sha256(content);
+            Properties applied = new Properties();
+            if (connection.getHeaderField("ETag") != null) applied.setProperty("etag", connection.getHeaderField("ETag"));
+            if (connection.getHeaderField("Last-Modified") != null) applied.setProperty("last-modified", connection.getHeaderField("Last-Modified"));
+            applied.setProperty("sha256", toHex(hash));
+            String error = verify(hash, connection, sha256);
+            if (error == null && !validator.test(content)) error = "the content is invalid";
+            if (error != null) {
+                Configurator.LOGGER.error("Rejected remote file {}: {}, keeping the local copy", url, error);
+                return Result.FAILED;
+            }
+            if (file.isFile() && applied.getProperty("sha256").equals(meta.getProperty("sha256"))) {
+                // servers without conditional requests send the same body again, the local copy keeps its local changes
+                writeMeta(metaFile, applied);
+                Configurator.LOGGER.debug("Remote file {} has the same content as the applied copy", url);
+                return Result.NOT_MODIFIED;
+            }
+
+            replace(file, content);
+            writeMeta(metaFile, applied);
+            Configurator.LOGGER.info("Applied remote file {} to {} in {} ms", url, file.getPath(), System.currentTimeMillis() - time);
+            return Result.UPDATED;
+        } catch (IOException | RuntimeException e) {
+            Configurator.LOGGER.warn("Could not fetch remote file {}: {}, keeping the local copy", url, e.toString());
+            return Result.FAILED;
+        } finally {
+            if (connection != null) connection.disconnect();
+        }
+    }
+
+    private static File getMetaFile(String key) {
+        return new File(CACHE_DIR, key + ".properties");
+    }
+
+    private static Properties readMeta(File metaFile, File file) {
+        Properties meta = new Properties();
+        if (!metaFile.isFile() || !file.isFile()) return meta;
+        try (InputStream stream = Files.newInputStream(metaFile.toPath())) {
+            meta.load(stream);
+        } catch (IOException e) {
+            return new Properties();
+        }
+        // metadata written before the body hash was stored does not describe the applied copy reliably
+        if (meta.getProperty("sha256") == null) return new Properties();
+        return meta;
+    }
+
+    private static void writeMeta(File metaFile, Properties meta) throws IOException {
+        if (!ConfigWriter.initFolder(metaFile.getParentFile())) throw new IOException("Could not make folder " + metaFile.getParent());
+        try (OutputStream stream = Files.newOutputStream(metaFile.toPath())) {
+            meta.store(stream, null);
+        }
+    }
+
+    private static byte[] readFully(InputStream stream, long length) throws IOException {
+        if (length > MAX_SIZE) throw new IOException("file is larger than " + MAX_SIZE + " bytes");
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 ? (int)length : 8192);
+        byte[] buffer = new byte[8192];
+        for (int read; (read = stream.read(buffer)) != -1; ) {
+            out.write(buffer, 0, read);
+            if (out.size() > MAX_SIZE) throw new IOException("file is larger than " + MAX_SIZE + " bytes");
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks the SHA-256 of the content against the digest headers of the response and the pinned hash.
+     * @return the reason the content was rejected, or null if it is valid
+     */
+    @Nullable
+    private static String verify(byte[] hash, HttpURLConnection connection, @Nullable String sha256) {
+        if (sha256 != null && !toHex(hash).equalsIgnoreCase(sha256.trim())) return "SHA-256 does not match the pinned hash";
+        String expected = getDigest(connection.getHeaderField("Content-Digest"));
+        if (expected == null) expected = getDigest(connection.getHeaderField("Digest"));
+        if (expected != null && !expected.equals(Base64.getEncoder().encodeToString(hash))) return "SHA-256 does not match the digest header";
+        if (sha256 == null && expected == null) Configurator.LOGGER.debug("Remote file {} has no digest to check", connection.getURL());
+        return null;
+    }
+
+    /**
+     * Gets the base64 SHA-256 from a Digest (sha-256=...) or Content-Digest (sha-256=:...:) header.
+     */
+    @Nullable
+    private static String getDigest(@Nullable String header) {
+        if (header == null) return null;
+        for (String part : header.split(",")) {
+            part = part.trim();
+            if (!part.toLowerCase(Locale.ROOT).startsWith("sha-256=")) continue;
+            String value = part.substring("sha-256=".length());
+            if (value.length() > 1 && value.startsWith(":") && value.endsWith(":")) value = value.substring(1, value.length() - 1);
+            return value;
+        }
+        return null;
+    }
+
+    private static byte[] sha256(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) builder.append(String.format("%02x", b));
+        return builder.toString();
+    }
+
+    private static boolean isJsonObject(byte[] content) {
+        try (InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8)) {
+            JsonElement json = new JsonParser().parse(reader);
+            return json.isJsonObject();
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the content to a temporary file next to the target and moves it over the target,
+     * so readers see either the old or the new file.
+     */
+    private static void replace(File file, byte[] content) throws IOException {
+        File dir = file.getParentFile() != null ? file.getParentFile() : file.getAbsoluteFile().getParentFile();
+        if (!ConfigWriter.initFolder(dir)) throw new IOException("Could not make folder " + dir.getPath());
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            Files.write(temp.toPath(), content);
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        ConfigFileIndex.update(file);
+    }
+}
@@ -0,0 +1,150 @@
+package configurator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import configurator.api.ArrayConfigValue;
+import configurator.api.BooleanConfigValue;
+import configurator.api.ByteConfigValue;
+import configurator.api.Config;
+import configurator.api.ConfigCategory;
+import configurator.api.ConfigValue;
+import configurator.api.DoubleConfigValue;
+import configurator.api.FloatConfigValue;
+import configurator.api.IntegerConfigValue;
+import configurator.api.JsonConfigValue;
+import configurator.api.LongConfigValue;
+import configurator.api.ShortConfigValue;
+import configurator.api.StringConfigValue;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * <p>
+ * Exports the layout of registered configs to a schema file, which {@link ConfigValidator} checks config folders against
+ * without starting the game.
+ * </p><p>
+ * The schema is exported after mod construction if the {@link ConfigSchema#PROPERTY} system property names a file.
+ * </p>
+ * The schema lists every config by its path inside the config folder, with the type and default of every value.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigSchema {
+    /** system property with the file to export the schema to */
+    public static final String PROPERTY = "configurator.schema";
+    /** the version of the schema format */
+    public static final int VERSION = 1;
+
+    /**
+     * Exports every registered config if {@link ConfigSchema#PROPERTY} is set.
+     */
+    protected static void exportIfRequested() {
+        String property = System.getProperty(PROPERTY);
+        if (property == null) return;
+        try {
+            List<Config> configs = Configurator.CONFIGS.snapshot();
+            export(configs, new File(property));
+            Configurator.LOGGER.info("Exported the schema of {} configs to {}", configs.size(), property);
+        } catch (IOException e) {
+            Configurator.LOGGER.error("Could not export the config schema to {}", property);
+            Configurator.LOGGER.error(e);
+        }
+    }
+
+    /**
+     * Writes the schema of the given configs to a file.
+     * @param configs the configs to export
+     * @param file the schema file
+     * @throws IOException if the file could not be written
+     */
+    public static void export(List<Config> configs, File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) throw new IOException("Could not make folder " + parent.getPath());
+        try (JsonWriter writer = ConfigWriter.newJsonWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            ConfigWriter.GSON.toJson(toJson(configs), writer);
+        }
+    }
+
+    /**
+     * Converts the layout of the given configs to json.
+     * @param configs the configs to convert
+     * @return the schema
+     */
+    public static JsonObject toJson(List<Config> configs) {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("version", VERSION);
+        JsonArray array = new JsonArray();
+        for (Config config : configs) {
+            JsonObject json = new JsonObject();
+            json.addProperty("file", ConfigBundle.getKey(config));
+            json.addProperty("sharded", config.isSharded());
+            JsonObject categories = new JsonObject();
+            for (ConfigCategory category : config.categories) categories.add(category.getName(), toJson(category));
+            json.add("categories", categories);
+            array.add(json);
+        }
+        schema.add("configs", array);
+        return schema;
+    }
+
+    private static JsonObject toJson(ConfigCategory category) {
+        JsonObject values = new JsonObject();
+        for (ConfigValue<?> value : category.getValues()) {
+            JsonObject json = new JsonObject();
+            json.addProperty("type", getType(value));
+            JsonElement defaultValue = toJson(value.getDefault());
+            if (defaultValue != null) json.add("default", defaultValue);
+            values.add(value.getName(), json);
+        }
+        JsonObject subCategories = new JsonObject();
+        for (ConfigCategory subCategory : category.getSubCategories()) subCategories.add(subCategory.getName(), toJson(subCategory));
+
+        JsonObject json = new JsonObject();
+        json.add("values", values);
+        json.add("categories", subCategories);
+        return json;
+    }
+
+    /**
+     * Gets the json type a config value is stored as.
+     * @param value the config value
+     * @return the type name
+     */
+    public static String getType(ConfigValue<?> value) {
+        if (value instanceof BooleanConfigValue) return "boolean";
+        if (value instanceof StringConfigValue) return "string";
+        if (value instanceof IntegerConfigValue) return "int";
+        if (value instanceof LongConfigValue) return "long";
+        if (value instanceof ShortConfigValue) return "short";
+        if (value instanceof ByteConfigValue) return "byte";
+        if (value instanceof FloatConfigValue) return "float";
+        if (value instanceof DoubleConfigValue) return "double";
+        if (value instanceof JsonConfigValue) return "object";
+        if (value instanceof ArrayConfigValue) return "array";
+        return "any";
+    }
+
+    /**
+     * Converts a stored value into json, the way the base {@link ConfigValue#writeToJson(JsonObject)} writes it.
+     * @param value the stored value
+     * @return the json, or null if the value is null
+     */
+    @Nullable
+    protected static JsonElement toJson(@Nullable Object value) {
+        if (value == null) return null;
+        if (value instanceof JsonElement) return (JsonElement)value;
+        if (value instanceof Number) return new JsonPrimitive((Number)value);
+        if (value instanceof Boolean) return new JsonPrimitive((Boolean)value);
+        return new JsonPrimitive(value.toString());
+    }
+}
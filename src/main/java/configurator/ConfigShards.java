@@ -0,0 +1,230 @@
+package configurator;
+
+import com.google.gson.JsonObject;
+import configurator.api.Config;
+import configurator.api.ConfigCategory;
+import configurator.api.DerivedConfigValue;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Loads and reloads the shards of sharded configs, see {@link Config.Builder#sharded(boolean)}.
+ * </p><p>
+ * Every top-level category of a sharded config lives in its own file inside a folder named after the config,
+ * e.g. config/mymod/common/balance/general.json. Each shard file is created, migrated and read on its own,
+ * so editing one category only costs the size of that shard.
+ * </p>
+ * Shards of configs with lazy shards are loaded the first time one of their values is read.
+ * A reload only reads the shards whose files changed since they were last read.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigShards {
+    private static final Map<ConfigCategory, Stamp> STAMPS = new ConcurrentHashMap<>();
+    private static final Map<Config, Stamp> OVERRIDE_STAMPS = new ConcurrentHashMap<>();
+
+    /**
+     * Reads every shard of a config, or binds the shards to load on their first read if the config has lazy shards.
+     * Called with the config locked.
+     * @param config the sharded config
+     */
+    protected static void load(Config config) {
+        OVERRIDE_STAMPS.put(config, Stamp.of(config.getStorage(), ConfigOverlays.getOverrideFile(config)));
+        for (ConfigCategory category : config.categories) {
+            if (config.hasLazyShards() && !config.isShardLoaded(category)) config.bindShard(category, () -> loadShard(config, category));
+            else {
+                readShard(config, category);
+                config.shardLoaded(category);
+            }
+        }
+        if (config.hasLazyShards()) {
+            for (DerivedConfigValue<?> value : config.getDerivedValues()) value.setLazyLoader(() -> loadShards(config));
+        }
+    }
+
+    /**
+     * Loads a shard of a config if it is not loaded yet.
+     * @param config the sharded config
+     * @param category the top-level category of the shard
+     */
+    public static void loadShard(Config config, ConfigCategory category) {
+        if (config.isShardLoaded(category)) return;
+        // values read while the config is loading on this thread keep their current values
+        if (Thread.holdsLock(config)) return;
+        synchronized (config) {
+            if (config.isShardLoaded(category)) return;
+            long time = System.currentTimeMillis();
+            try (ConfigTracer.Span span = ConfigTracer.begin("shard", config); ConfigSync.Lock lock = ConfigSync.lock(config)) {
+                readShard(config, category);
+                config.shardLoaded(category);
+                config.updateDerived();
+            }
+            Configurator.LOGGER.debug("Loaded shard {} of config {} in {} ms", category.getName(), config.name, System.currentTimeMillis() - time);
+        }
+    }
+
+    /**
+     * Loads every shard of a config that is not loaded yet.
+     * @param config the sharded config
+     */
+    public static void loadShards(Config config) {
+        for (ConfigCategory category : config.categories) loadShard(config, category);
+    }
+
+    /**
+     * Reads the loaded shards of a config whose files changed since they were last read.
+     * Every loaded shard is read if the override file of the config changed. Called with the config locked.
+     * @param config the sharded config
+     * @return the amount of shards that were read
+     */
+    protected static int reload(Config config) {
+        ConfigStorage storage = config.getStorage();
+        File overrideFile = ConfigOverlays.getOverrideFile(config);
+        storage.refresh(overrideFile);
+        Stamp overrides = Stamp.of(storage, overrideFile);
+        boolean force = !overrides.equals(OVERRIDE_STAMPS.put(config, overrides));
+
+        int reloaded = 0;
+        for (ConfigCategory category : config.categories) {
+            if (!config.isShardLoaded(category)) continue;
+            File file = ConfigWriter.getShardFile(config, category);
+            storage.refresh(file);
+            if (!force && Stamp.of(storage, file).equals(STAMPS.get(category))) continue;
+            resolveShard(config, category, file);
+            reloaded++;
+        }
+        if (reloaded > 0) config.updateDerived();
+        return reloaded;
+    }
+
+    /**
+     * Reads a single shard of a config again, loading it if it is not loaded yet.
+     * @param config the sharded config
+     * @param category the top-level category of the shard
+     */
+    public static void reloadShard(Config config, ConfigCategory category) {
+        if (!config.isShardLoaded(category)) {
+            loadShard(config, category);
+            return;
+        }
+        synchronized (config) {
+            File file = ConfigWriter.getShardFile(config, category);
+            try (ConfigSync.Lock lock = ConfigSync.lock(config, true)) {
+                config.publish(() -> {
+                    config.getStorage().refresh(file);
+                    resolveShard(config, category, file);
+                    config.updateDerived();
+                });
+            }
+        }
+        ConfigWorlds.invalidate(config);
+    }
+
+    /**
+     * Gets the newest modification time of the shard files of a config.
+     * @param config the sharded config
+     * @return the newest modification time, or 0 if no shard file exists
+     */
+    public static long getLastModified(Config config) {
+        ConfigStorage storage = config.getStorage();
+        long lastModified = 0;
+        for (ConfigCategory category : config.categories) {
+            ConfigFileIndex.Entry entry = storage.get(ConfigWriter.getShardFile(config, category));
+            if (entry != null) lastModified = Math.max(lastModified, entry.lastModified);
+        }
+        return lastModified;
+    }
+
+    /**
+     * Makes sure the file of a shard exists and matches the category, then resolves the shard values from it.
+     */
+    private static void readShard(Config config, ConfigCategory category) {
+        ConfigStorage storage = config.getStorage();
+        File file = ConfigWriter.getShardFile(config, category);
+        boolean exists = storage.exists(file);
+
+        if (!exists && !ConfigWorlds.isWorldFile(config)) {
+            ConfigBundle bundle = ConfigBundle.get();
+            JsonObject bundled = bundle != null ? bundle.read(ConfigBundle.getKey(ConfigWriter.getGlobalShardFile(config, category))) : null;
+            if (bundled != null) {
+                STAMPS.put(category, Stamp.of(storage, file));
+                ConfigOverlays.resolve(config, category, bundled);
+                Configurator.applyConstraints(config, category, file);
+                return;
+            }
+        }
+
+        if (!exists) {
+            try (ConfigTracer.Span write = ConfigTracer.begin("write", config)) {
+                ConfigWriter.writeShard(config, category);
+            }
+        } else {
+            JsonObject json = ConfigWriter.readConfigJson(storage, file);
+            if (json != null && !ConfigWriter.jsonMatchesShard(json, category)) {
+                try (ConfigTracer.Span migrate = ConfigTracer.begin("migrate", config)) {
+                    ConfigWriter.updateShard(json, config, category);
+                }
+            }
+        }
+        resolveShard(config, category, file);
+    }
+
+    private static void resolveShard(Config config, ConfigCategory category, File file) {
+        ConfigStorage storage = config.getStorage();
+        JsonObject json = null;
+        if (storage.exists(file)) {
+            try (ConfigTracer.Span parse = ConfigTracer.begin("parse", config)) {
+                json = ConfigWriter.readConfigJson(storage, file);
+            }
+        } else if (!ConfigWorlds.isWorldFile(config)) {
+            ConfigBundle bundle = ConfigBundle.get();
+            if (bundle != null) json = bundle.read(ConfigBundle.getKey(ConfigWriter.getGlobalShardFile(config, category)));
+        }
+        STAMPS.put(category, Stamp.of(storage, file));
+        try (ConfigTracer.Span deserialize = ConfigTracer.begin("deserialize", config)) {
+            ConfigOverlays.resolve(config, category, json);
+        }
+        try (ConfigTracer.Span validate = ConfigTracer.begin("validate", config)) {
+            Configurator.applyConstraints(config, category, file);
+        }
+    }
+
+    /**
+     * The size and modification time of a file when it was read.
+     */
+    private static class Stamp {
+        private static final Stamp MISSING = new Stamp(-1, -1);
+
+        private final long size;
+        private final long lastModified;
+
+        private Stamp(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private static Stamp of(ConfigStorage storage, File file) {
+            ConfigFileIndex.Entry entry = storage.get(file);
+            return entry != null ? new Stamp(entry.size, entry.lastModified) : MISSING;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof Stamp)) return false;
+            Stamp stamp = (Stamp)obj;
+            return size == stamp.size && lastModified == stamp.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModified);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package configurator;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * Where {@link ConfigWriter} keeps config files.
+ * </p><p>
+ * Files are always named by the path they would have inside {@link ConfigWriter#CONFIG_DIR}, or inside the world save
+ * for world configs, and the storage decides where that path actually lives. This lets several config roots exist in
+ * one game, for example one per test, without any of them touching the real config folder.
+ * </p>
+ * The default storage is {@link ConfigWriter#getStorage()}, a config can use its own with {@link configurator.api.Config.Builder#withStorage(ConfigStorage)}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public interface ConfigStorage {
+    /**
+     * Gets the attributes of a file or folder.
+     * @param file the file to look up
+     * @return the attributes, or null if the file does not exist
+     */
+    @Nullable
+    ConfigFileIndex.Entry get(File file);
+
+    /**
+     * Checks if a file or folder exists.
+     * @param file the file to check
+     * @return if the file exists
+     */
+    default boolean exists(File file) {
+        return get(file) != null;
+    }
+
+    /**
+     * Checks if a folder exists.
+     * @param file the folder to check
+     * @return if the folder exists and is a folder
+     */
+    default boolean isDirectory(File file) {
+        ConfigFileIndex.Entry entry = get(file);
+        return entry != null && entry.directory;
+    }
+
+    /**
+     * Opens a file for reading.
+     * @param file the file to read
+     * @return a reader of the file as UTF-8
+     * @throws IOException if the file does not exist or can not be read
+     */
+    Reader newReader(File file) throws IOException;
+
+    /**
+     * Creates a new file for writing. The content is written as UTF-8.
+     * @param file the file to create, its folder has to exist
+     * @return a writer into the file
+     * @throws IOException if the file already exists or can not be created
+     */
+    Writer newWriter(File file) throws IOException;
+
+    /**
+     * Replaces a file in one step, so readers see either the old or the whole new content. The content is written as UTF-8.
+     * @param file the file to replace or create, its folder has to exist
+     * @param content writes the new content
+     * @throws IOException if the content could not be written, the old file is left as it was then
+     */
+    void replace(File file, Content content) throws IOException;
+
+    /**
+     * Deletes a file.
+     * @param file the file to delete
+     * @return if the file was deleted
+     */
+    boolean delete(File file);
+
+    /**
+     * Creates a folder and its parents.
+     * @param dir the folder to create
+     * @return if the folder exists afterwards
+     */
+    boolean makeFolder(File dir);
+
+    /**
+     * Reads the attributes of a file again after something outside of this storage might have changed it.
+     * @param file the file that might have changed
+     */
+    void refresh(File file);
+
+    /**
+     * Gets the location of a file on disk.
+     * @param file the file
+     * @return the path the file is stored at, or null if this storage does not keep files on disk
+     */
+    @Nullable
+    Path getPath(File file);
+
+    /**
+     * Writes the content of a file, see {@link ConfigStorage#replace(File, Content)}.
+     */
+    @FunctionalInterface
+    interface Content {
+        /**
+         * @param writer the writer into the new file, closed by the storage
+         * @throws IOException if the content could not be written
+         */
+        void write(Writer writer) throws IOException;
+    }
+}
@@ -0,0 +1,292 @@
+package configurator;
+
+import configurator.api.Config;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * Keeps several game processes that share one config folder consistent, enabled by setting {@link ConfigSync#PROPERTY}
+ * to the poll interval in milliseconds.
+ * </p><p>
+ * Every config has a slot in the version table in {@link ConfigSync#FOLDER}, and its files are only read or written under a
+ * {@link FileLock} on that slot: reloads take a shared lock, loads and writes an exclusive one. So no process reads a file
+ * another process is writing and writers can not clobber each other, while processes working on different configs never wait
+ * for each other. Every write moves the version of its config forward in its slot. The table is memory-mapped, so polling it
+ * costs a few memory reads per config, and a process only reloads the configs whose version moved past the one it last read.
+ * </p>
+ * Only configs kept on disk take part, world configs do not. The lock is taken inside the config lock, so code holding it must
+ * never lock a config.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigSync {
+    /** the system property holding the poll interval in milliseconds, coordination is off if it is not set */
+    public static final String PROPERTY = "configurator.sync";
+    /** the folder holding the shared version table */
+    public static final File FOLDER = new File(ConfigWriter.CONFIG_DIR, "configurator-sync");
+    private static final int MAGIC = 0x4353594E;
+    private static final int CAPACITY = 4096;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 16;
+    private static final long INTERVAL = Long.getLong(PROPERTY, 0);
+
+    /** the versions of the files each config was last read from or written to */
+    private static final Map<Config, Long> SEEN = new ConcurrentHashMap<>();
+    private static final Map<Config, Long> KEYS = new ConcurrentHashMap<>();
+    /** the lock state of every slot, configs of the same file share it */
+    private static final Map<Long, Holder> HOLDERS = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = INTERVAL > 0;
+    @Nullable
+    private static volatile FileChannel channel;
+    @Nullable
+    private static volatile MappedByteBuffer table;
+    @Nullable
+    private static ScheduledExecutorService poller;
+
+    /**
+     * Checks if a config takes part in coordination.
+     * @param config the config
+     * @return if coordination is enabled and the config is kept on disk
+     */
+    public static boolean isSynced(Config config) {
+        return enabled && config.type != Config.Type.WORLD && config.getStorage().getPath(ConfigWriter.getGlobalConfigFile(config)) != null;
+    }
+
+    /**
+     * Locks the files of a config exclusively against other threads and processes, for loads and writes.
+     * See {@link ConfigSync#lock(Config, boolean)}.
+     * @param config the config whose files are read or written
+     * @return the lock, which does nothing if the config does not take part in coordination
+     */
+    public static Lock lock(Config config) {
+        return lock(config, false);
+    }
+
+    /**
+     * <p>
+     * Locks the files of a config against other processes. Locks are reentrant, nested locks only lock the files once.
+     * Threads of this process always hold the lock of a config one at a time, only other processes share it.
+     * </p><p>
+     * A file lock can not be upgraded, so an exclusive lock nested in a shared one releases the shared lock before locking
+     * exclusively, and another process may write in between. Code that reads and then writes should lock exclusively from the start.
+     * </p>
+     * Take it inside the config lock, and close it once the files are read or written.
+     * @param config the config whose files are read or written
+     * @param shared if the files are only read
+     * @return the lock, which does nothing if the config does not take part in coordination
+     */
+    public static Lock lock(Config config, boolean shared) {
+        if (!isSynced(config)) return Lock.NONE;
+        Holder holder = HOLDERS.computeIfAbsent(getKey(config), key -> new Holder());
+        holder.lock.lock();
+        try {
+            FileChannel channel = open();
+            if (holder.slot < 0) holder.slot = claim(channel, getKey(config));
+            if (holder.fileLock != null && holder.fileLock.isShared() && !shared) {
+                holder.fileLock.release();
+                holder.fileLock = null;
+            }
+            if (holder.fileLock == null) holder.fileLock = channel.lock(holder.slot, SLOT_SIZE, shared);
+        } catch (IOException | RuntimeException e) {
+            holder.lock.unlock();
+            Configurator.LOGGER.error("Could not lock the config version table, disabling config coordination");
+            Configurator.LOGGER.error(e);
+            enabled = false;
+            return Lock.NONE;
+        }
+        return new Lock(config, holder);
+    }
+
+    /**
+     * Marks a config as written, its version moves forward when its outermost lock is closed. Called with the config locked.
+     * @param config the written config
+     */
+    public static void changed(Config config) {
+        Holder holder = HOLDERS.get(getKey(config));
+        if (holder != null && holder.lock.isHeldByCurrentThread()) holder.changed = true;
+    }
+
+    /**
+     * Gets the version of a config in the shared table, without locking.
+     * @param config the config
+     * @return the version, 0 if the config was never written while coordination was enabled
+     */
+    public static long getVersion(Config config) {
+        MappedByteBuffer table = ConfigSync.table;
+        if (table == null) return 0;
+        Holder holder = HOLDERS.get(getKey(config));
+        int slot = holder != null && holder.slot >= 0 ? holder.slot : find(table, getKey(config));
+        return slot >= 0 ? table.getLong(slot + 8) : 0;
+    }
+
+    /**
+     * Starts polling the version table on a background thread, if coordination is enabled.
+     */
+    public static synchronized void start() {
+        if (!enabled || poller != null) return;
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Configurator Sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(ConfigSync::poll, INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+        Configurator.LOGGER.info("Coordinating configs with other processes every {} ms", INTERVAL);
+    }
+
+    /**
+     * Reloads every config whose version moved past the version this process last read.
+     * @return the amount of reloaded configs
+     */
+    public static int poll() {
+        int reloaded = 0;
+        for (Map.Entry<Config, Long> entry : SEEN.entrySet()) {
+            Config config = entry.getKey();
+            if (getVersion(config) <= entry.getValue()) continue;
+            try {
+                Configurator.reloadConfig(config);
+                reloaded++;
+                Configurator.LOGGER.info("Reloaded config {} changed by another process", config.name);
+            } catch (RuntimeException e) {
+                Configurator.LOGGER.error("Could not reload config {} changed by another process", config.name);
+                Configurator.LOGGER.error(e);
+            }
+        }
+        return reloaded;
+    }
+
+    private static synchronized FileChannel open() throws IOException {
+        if (channel != null) return channel;
+        if (!ConfigWriter.initFolder(FOLDER)) throw new IOException("Could not make folder " + FOLDER.getPath());
+        FileChannel channel = FileChannel.open(new File(FOLDER, "versions.bin").toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer table;
+        try (FileLock lock = channel.lock(0, HEADER_SIZE, false)) {
+            table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long)CAPACITY * SLOT_SIZE);
+            if (table.getInt(0) == 0) {
+                table.putInt(4, CAPACITY);
+                table.putInt(0, MAGIC);
+            }
+        }
+        if (table.getInt(0) != MAGIC || table.getInt(4) != CAPACITY) {
+            channel.close();
+            throw new IOException("Unknown config version table format");
+        }
+        ConfigSync.table = table;
+        ConfigSync.channel = channel;
+        return channel;
+    }
+
+    private static long getKey(Config config) {
+        return KEYS.computeIfAbsent(config, c -> {
+            Path path = c.getStorage().getPath(ConfigWriter.getGlobalConfigFile(c));
+            // the absolute path names the same config in every process on the host
+            byte[] bytes = (path != null ? path.toAbsolutePath().normalize().toString() : c.name).getBytes(StandardCharsets.UTF_8);
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : bytes) hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+            return hash != 0 ? hash : 1;
+        });
+    }
+
+    /**
+     * finds the slot of a key with linear probing.
+     * @return the offset of the slot, or -1 if the table does not hold the key
+     */
+    private static int find(MappedByteBuffer table, long key) {
+        int start = (int)(key ^ (key >>> 32)) & (CAPACITY - 1);
+        for (int i = 0; i < CAPACITY; i++) {
+            int slot = HEADER_SIZE + ((start + i) & (CAPACITY - 1)) * SLOT_SIZE;
+            long found = table.getLong(slot);
+            if (found == key) return slot;
+            if (found == 0) return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * finds the slot of a key, claiming a free one for it under an exclusive lock on the table header if the table does not hold it yet.
+     * @return the offset of the slot
+     * @throws IOException if the table is full
+     */
+    private static synchronized int claim(FileChannel channel, long key) throws IOException {
+        MappedByteBuffer table = ConfigSync.table;
+        int slot = find(table, key);
+        if (slot >= 0) return slot;
+        try (FileLock lock = channel.lock(0, HEADER_SIZE, false)) {
+            int start = (int)(key ^ (key >>> 32)) & (CAPACITY - 1);
+            for (int i = 0; i < CAPACITY; i++) {
+                slot = HEADER_SIZE + ((start + i) & (CAPACITY - 1)) * SLOT_SIZE;
+                long found = table.getLong(slot);
+                if (found == key) return slot;
+                if (found != 0) continue;
+                table.putLong(slot + 8, 0);
+                // the key is written last, so readers never see a claimed slot with an old version
+                table.putLong(slot, key);
+                return slot;
+            }
+        }
+        throw new IOException("The config version table is full");
+    }
+
+    private static class Holder {
+        /** keeps the threads of this process apart, file locks are held by the whole process */
+        private final ReentrantLock lock = new ReentrantLock();
+        private int slot = -1;
+        @Nullable
+        private FileLock fileLock;
+        /** if the config was written under the current lock, only used while holding it */
+        private boolean changed;
+    }
+
+    /**
+     * A lock on the files of a config, see {@link ConfigSync#lock(Config, boolean)}.
+     */
+    public static class Lock implements AutoCloseable {
+        private static final Lock NONE = new Lock(null, null);
+        @Nullable
+        private final Config config;
+        @Nullable
+        private final Holder holder;
+
+        private Lock(@Nullable Config config, @Nullable Holder holder) {
+            this.config = config;
+            this.holder = holder;
+        }
+
+        @Override
+        public void close() {
+            if (config == null || holder == null) return;
+            if (holder.lock.getHoldCount() > 1) {
+                holder.lock.unlock();
+                return;
+            }
+            try {
+                long version = table.getLong(holder.slot + 8);
+                if (holder.changed) table.putLong(holder.slot + 8, ++version);
+                holder.changed = false;
+                SEEN.put(config, version);
+                if (holder.fileLock != null) holder.fileLock.release();
+            } catch (IOException e) {
+                Configurator.LOGGER.error(e);
+            } finally {
+                holder.fileLock = null;
+                holder.lock.unlock();
+            }
+        }
+    }
+}
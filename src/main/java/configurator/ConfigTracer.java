@@ -0,0 +1,140 @@
+package configurator;
+
+import com.google.gson.stream.JsonWriter;
+import configurator.api.Config;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <p>
+ * Opt-in tracer that records a span for every config load stage, enabled with -Dconfigurator.trace=true.
+ * </p><p>
+ * Spans carry the id of the thread they ran on, so lazy and prefetched loads show up on their own tracks.
+ * </p>
+ * The trace is written to {@link ConfigTracer#TRACE_FILE} in the Chrome trace-event format after mod construction
+ * and again when the game closes. It can be opened in chrome://tracing or Perfetto.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigTracer {
+    /** system property that enables tracing */
+    public static final String PROPERTY = "configurator.trace";
+    /** the file the trace is written to, inside the game folder */
+    public static final File TRACE_FILE = new File("configurator-trace.json");
+
+    private static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+    private static final long START = System.nanoTime();
+    private static final Queue<Span> SPANS = new ConcurrentLinkedQueue<>();
+    private static final Map<Long, String> THREADS = new ConcurrentHashMap<>();
+    private static final Span NONE = new Span("", null);
+
+    static {
+        if (ENABLED) Runtime.getRuntime().addShutdownHook(new Thread(ConfigTracer::write, "Configurator Tracer"));
+    }
+
+    /**
+     * Checks if spans are being recorded.
+     * @return if tracing is enabled
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Starts a span of a load stage. Spans should be closed with try-with-resources.
+     * @param stage the name of the stage
+     * @param config the config the stage runs for, or null
+     * @return the started span, does nothing if tracing is disabled
+     */
+    public static Span begin(String stage, @Nullable Config config) {
+        if (!ENABLED) return NONE;
+        return new Span(stage, config);
+    }
+
+    /**
+     * Writes every span recorded so far into {@link ConfigTracer#TRACE_FILE}.
+     */
+    public static void write() {
+        if (ENABLED) write(TRACE_FILE);
+    }
+
+    /**
+     * Writes every span recorded so far into a file.
+     * @param file the trace file
+     */
+    public static synchronized void write(File file) {
+        try (Writer out = Files.newBufferedWriter(file.toPath()); JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("displayTimeUnit").value("ms");
+            writer.name("traceEvents").beginArray();
+            for (Map.Entry<Long, String> thread : THREADS.entrySet()) {
+                writer.beginObject();
+                writer.name("name").value("thread_name");
+                writer.name("ph").value("M");
+                writer.name("pid").value(1);
+                writer.name("tid").value(thread.getKey());
+                writer.name("args").beginObject().name("name").value(thread.getValue()).endObject();
+                writer.endObject();
+            }
+            for (Span span : SPANS) span.write(writer);
+            writer.endArray();
+            writer.endObject();
+        } catch (IOException e) {
+            Configurator.LOGGER.error(e);
+        }
+    }
+
+    /**
+     * A running or finished load stage.
+     */
+    public static class Span implements AutoCloseable {
+        protected final String stage;
+        @Nullable
+        protected final String config;
+        protected final long thread;
+        protected final long start;
+        protected long end;
+
+        protected Span(String stage, @Nullable Config config) {
+            Thread current = Thread.currentThread();
+            this.stage = stage;
+            this.config = config != null ? config.folder + "/" + config.name : null;
+            this.thread = current.getId();
+            this.start = System.nanoTime();
+            if (ENABLED) THREADS.putIfAbsent(thread, current.getName());
+        }
+
+        /**
+         * Ends this span and records it.
+         */
+        @Override
+        public void close() {
+            if (this == NONE) return;
+            end = System.nanoTime();
+            SPANS.add(this);
+        }
+
+        protected void write(JsonWriter writer) throws IOException {
+            writer.beginObject();
+            writer.name("name").value(stage);
+            writer.name("cat").value(Configurator.MOD_ID);
+            writer.name("ph").value("X");
+            writer.name("ts").value((start - START) / 1000.0);
+            writer.name("dur").value((end - start) / 1000.0);
+            writer.name("pid").value(1);
+            writer.name("tid").value(thread);
+            if (config != null) writer.name("args").beginObject().name("config").value(config).endObject();
+            writer.endObject();
+        }
+    }
+}
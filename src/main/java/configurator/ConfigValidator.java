@@ -0,0 +1,340 @@
+package configurator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * Checks a config folder against a schema exported by {@link ConfigSchema}, without starting the game.
+ * Meant for modpack CI, run it with only this mod and gson on the classpath:
+ * </p>
+ * <pre>java -cp configurator.jar:gson.jar configurator.ConfigValidator [--migrate] [--strict] [--threads n] schema.json config</pre>
+ * <p>
+ * Every config file is checked on its own thread pool task. Mistyped values and files that can not be parsed are errors,
+ * missing and unknown keys and missing files are warnings, which the game fixes on its next start.
+ * With --migrate the warnings are fixed the same way the game fixes them: missing keys get their default and unknown keys are removed.
+ * Files that also have errors are not migrated.
+ * With --strict warnings fail the run too.
+ * </p>
+ * This class must not touch any Minecraft class, since it runs without the game on the classpath.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigValidator {
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+
+    private static void usage(@Nullable String problem) {
+        if (problem != null) System.err.println(problem);
+        System.err.println("Usage: ConfigValidator [--migrate] [--strict] [--threads n] <schema file> <config folder>");
+        System.exit(2);
+    }
+
+    /**
+     * Validates a config folder from the command line. Exits with 1 if a config is invalid and with 2 on bad arguments.
+     * @param args the options, the schema file and the config folder
+     */
+    public static void main(String[] args) throws IOException {
+        boolean migrate = false;
+        boolean strict = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--migrate")) migrate = true;
+            else if (args[i].equals("--strict")) strict = true;
+            else if (args[i].equals("--threads") && i + 1 < args.length) {
+                try {
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                } catch (NumberFormatException e) {
+                    usage("--threads needs a number, got " + args[i]);
+                }
+            } else files.add(args[i]);
+        }
+        if (files.size() != 2) usage(null);
+
+        JsonObject schema;
+        try (Reader reader = Files.newBufferedReader(new File(files.get(0)).toPath(), StandardCharsets.UTF_8)) {
+            schema = new JsonParser().parse(reader).getAsJsonObject();
+        }
+        Report report = validate(schema, new File(files.get(1)), migrate, threads);
+        for (FileResult result : report.results)
+            for (String problem : result.problems) System.out.println(problem);
+        System.out.printf("Checked %d files (%.1f KB) in %d ms on %d threads, %.0f files/s, %.2f MB/s%n", report.results.size(), report.bytes / 1024.0, report.time, threads,
+            report.results.size() * 1000.0 / Math.max(1, report.time), report.bytes / 1048576.0 * 1000.0 / Math.max(1, report.time));
+        System.out.printf("%d errors, %d warnings, %d files migrated%n", report.errors, report.warnings, report.migrated);
+        if (report.errors > 0 || (strict && report.warnings > 0)) System.exit(1);
+    }
+
+    /**
+     * Validates every config of a schema in parallel.
+     * @param schema the parsed schema file
+     * @param configDir the config folder to check
+     * @param migrate if missing and unknown keys should be fixed
+     * @param threads the amount of threads to use
+     * @return the report, with the results in schema order
+     */
+    public static Report validate(JsonObject schema, File configDir, boolean migrate, int threads) {
+        if (!schema.has("version") || schema.get("version").getAsInt() != ConfigSchema.VERSION) throw new IllegalArgumentException("Unsupported config schema version " + schema.get("version"));
+        long time = System.currentTimeMillis();
+        List<Task> tasks = new ArrayList<>();
+        for (JsonElement element : schema.getAsJsonArray("configs")) {
+            JsonObject config = element.getAsJsonObject();
+            String file = config.get("file").getAsString();
+            JsonObject categories = config.getAsJsonObject("categories");
+            if (config.has("sharded") && config.get("sharded").getAsBoolean()) {
+                String folder = file.substring(0, file.length() - ".json".length());
+                for (Map.Entry<String, JsonElement> category : categories.entrySet()) {
+                    JsonObject shard = new JsonObject();
+                    shard.add(category.getKey(), category.getValue());
+                    tasks.add(new Task(new File(configDir, folder + "/" + category.getKey() + ".json"), shard, migrate));
+                }
+            } else tasks.add(new Task(new File(configDir, file), categories, migrate));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Configurator Validator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Report report = new Report();
+        try {
+            List<Future<FileResult>> futures = executor.invokeAll(tasks);
+            for (Future<FileResult> future : futures) report.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        report.time = System.currentTimeMillis() - time;
+        return report;
+    }
+
+    /**
+     * Validates a single config file.
+     * @param file the config file
+     * @param categories the schema of the categories stored in the file
+     * @param migrate if missing and unknown keys should be fixed, files with errors are never migrated
+     * @return the result
+     */
+    public static FileResult validate(File file, JsonObject categories, boolean migrate) {
+        FileResult result = new FileResult(file);
+        JsonObject json = null;
+        if (file.isFile()) {
+            try {
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                result.bytes = bytes.length;
+                JsonElement element = new JsonParser().parse(new String(bytes, StandardCharsets.UTF_8));
+                if (!element.isJsonObject()) {
+                    result.error("is not a json object");
+                    return result;
+                }
+                json = element.getAsJsonObject();
+            } catch (IOException | JsonParseException e) {
+                result.error("could not be parsed: " + e.getMessage());
+                return result;
+            }
+        } else result.warning("is missing, it is created with the default values");
+
+        JsonObject migrated = new JsonObject();
+        for (Map.Entry<String, JsonElement> category : categories.entrySet())
+            migrated.add(category.getKey(), validateCategory(category.getKey(), category.getValue().getAsJsonObject(), json != null ? json.get(category.getKey()) : null, json != null, result));
+        if (json != null) {
+            for (Map.Entry<String, JsonElement> entry : json.entrySet())
+                if (!categories.has(entry.getKey())) result.warning("has an unknown category " + entry.getKey());
+        }
+
+        // files with errors are left alone, the migrated copy would replace what the user wrote with defaults
+        if (migrate && result.warnings > 0 && result.errors == 0) {
+            try {
+                write(file, GSON.toJson(migrated));
+                result.migrated = true;
+            } catch (IOException e) {
+                result.error("could not be migrated: " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private static JsonObject validateCategory(String path, JsonObject schema, @Nullable JsonElement element, boolean exists, FileResult result) {
+        JsonObject json = null;
+        if (element == null) {
+            if (exists) result.warning("is missing the category " + path);
+        } else if (!element.isJsonObject()) result.error(String.format("has %s instead of the category %s", element, path));
+        else json = element.getAsJsonObject();
+
+        JsonObject migrated = new JsonObject();
+        JsonObject values = schema.getAsJsonObject("values");
+        JsonObject categories = schema.getAsJsonObject("categories");
+        for (Map.Entry<String, JsonElement> entry : values.entrySet()) {
+            JsonObject value = entry.getValue().getAsJsonObject();
+            String type = value.get("type").getAsString();
+            JsonElement found = json != null ? json.get(entry.getKey()) : null;
+            if (found == null) {
+                if (json != null) result.warning(String.format("is missing %s.%s", path, entry.getKey()));
+                if (value.has("default")) migrated.add(entry.getKey(), value.get("default"));
+            } else {
+                if (!matches(type, found)) result.error(String.format("has %s for %s.%s, which should be %s", found, path, entry.getKey(), type));
+                migrated.add(entry.getKey(), found);
+            }
+        }
+        for (Map.Entry<String, JsonElement> entry : categories.entrySet())
+            migrated.add(entry.getKey(), validateCategory(path + "." + entry.getKey(), entry.getValue().getAsJsonObject(), json != null ? json.get(entry.getKey()) : null, json != null, result));
+
+        if (json != null) {
+            for (Map.Entry<String, JsonElement> entry : json.entrySet())
+                if (!values.has(entry.getKey()) && !categories.has(entry.getKey())) result.warning(String.format("has an unknown key %s.%s", path, entry.getKey()));
+        }
+        return migrated;
+    }
+
+    /**
+     * Checks if a json element can be read as the given schema type, the same way the game reads it.
+     * @param type the schema type, see {@link ConfigSchema#getType}
+     * @param element the json element
+     * @return if the element is valid
+     */
+    public static boolean matches(String type, JsonElement element) {
+        switch (type) {
+            case "boolean": return element.isJsonPrimitive() && element.getAsJsonPrimitive().isBoolean();
+            case "string": return element.isJsonPrimitive();
+            case "int": return isInRange(element, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            case "long": return isInRange(element, Long.MIN_VALUE, Long.MAX_VALUE);
+            case "short": return isInRange(element, Short.MIN_VALUE, Short.MAX_VALUE);
+            case "byte": return isInRange(element, Byte.MIN_VALUE, Byte.MAX_VALUE);
+            case "float":
+            case "double": return toNumber(element) != null;
+            case "object": return element.isJsonObject();
+            case "array": return element.isJsonArray();
+            default: return true;
+        }
+    }
+
+    private static boolean isInRange(JsonElement element, long min, long max) {
+        BigDecimal number = toNumber(element);
+        if (number == null) return false;
+        try {
+            long value = number.longValueExact();
+            return value >= min && value <= max;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    @Nullable
+    private static BigDecimal toNumber(JsonElement element) {
+        if (!element.isJsonPrimitive()) return null;
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isBoolean()) return null;
+        try {
+            return new BigDecimal(primitive.getAsString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not make folder " + dir.getPath());
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            Files.write(temp.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static class Task implements Callable<FileResult> {
+        private final File file;
+        private final JsonObject categories;
+        private final boolean migrate;
+
+        private Task(File file, JsonObject categories, boolean migrate) {
+            this.file = file;
+            this.categories = categories;
+            this.migrate = migrate;
+        }
+
+        @Override
+        public FileResult call() {
+            return validate(file, categories, migrate);
+        }
+    }
+
+    /**
+     * The problems found in a single config file.
+     */
+    public static class FileResult {
+        public final File file;
+        public final List<String> problems = new ArrayList<>();
+        public long bytes;
+        public int errors;
+        public int warnings;
+        public boolean migrated;
+
+        protected FileResult(File file) {
+            this.file = file;
+        }
+
+        protected void error(String problem) {
+            problems.add("ERROR " + file.getPath() + " " + problem);
+            errors++;
+        }
+
+        protected void warning(String problem) {
+            problems.add("WARN  " + file.getPath() + " " + problem);
+            warnings++;
+        }
+    }
+
+    /**
+     * The results of a whole config folder.
+     */
+    public static class Report {
+        public final List<FileResult> results = new ArrayList<>();
+        public long bytes;
+        public int errors;
+        public int warnings;
+        public int migrated;
+        public long time;
+
+        protected void add(FileResult result) {
+            results.add(result);
+            bytes += result.bytes;
+            errors += result.errors;
+            warnings += result.warnings;
+            if (result.migrated) migrated++;
+        }
+    }
+}
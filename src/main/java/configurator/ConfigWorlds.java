@@ -0,0 +1,141 @@
+package configurator;
+
+import configurator.api.Config;
+import configurator.api.ConfigSnapshot;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Switches {@link Config.Type#WORLD} configs between the template in the config folder and the files of the loaded world.
+ * </p><p>
+ * World files live in {@link ConfigWorlds#FOLDER} inside the world save. A world without a file starts with the values
+ * of the template. The values of recently loaded worlds are kept as {@link ConfigSnapshot}s, so switching back to one
+ * restores the snapshot instead of reading and deserializing its files again, unless a file was changed in between.
+ * </p><p>
+ * Every switch is published in one step per config, see {@link Config#publish(Runnable)}, so readers that do not lock the
+ * config never see a mix of two worlds. A world that is not cached is read while readers wait.
+ * </p>
+ * Only worlds hosted by this game are switched. A client joining a remote server keeps its template values, the server
+ * does not send its world values to clients.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ConfigWorlds {
+    /** the folder inside the world save that holds world configs */
+    public static final String FOLDER = "serverconfig";
+    private static final int CACHED_WORLDS = 4;
+
+    private static final Map<File, Map<Config, ConfigSnapshot>> CACHE = new LinkedHashMap<File, Map<Config, ConfigSnapshot>>(CACHED_WORLDS, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, Map<Config, ConfigSnapshot>> eldest) {
+            return size() > CACHED_WORLDS;
+        }
+    };
+    private static final Map<Config, ConfigSnapshot> TEMPLATES = new HashMap<>();
+    private static volatile File worldDir;
+
+    /**
+     * Gets the config folder of the loaded world.
+     * @return the world config folder, or null if no world is loaded
+     */
+    @Nullable
+    public static File getWorldDir() {
+        return worldDir;
+    }
+
+    /**
+     * Checks if a config is currently read from a world save.
+     * @param config the config
+     * @return if the config is a world config and a world is loaded
+     */
+    public static boolean isWorldFile(Config config) {
+        return config.type == Config.Type.WORLD && worldDir != null;
+    }
+
+    /**
+     * Switches every world config to the files of a world.
+     * @param dir the config folder of the world
+     */
+    public static synchronized void load(File dir) {
+        // the templates are not restored first, every config switches straight to the new world below
+        File previous = worldDir;
+        worldDir = null;
+        long time = System.currentTimeMillis();
+
+        List<Config> configs = new ArrayList<>();
+        for (Config config : Configurator.CONFIGS.snapshot()) {
+            if (config.type != Config.Type.WORLD) continue;
+            Configurator.loadConfig(config, false);
+            synchronized (config) {
+                TEMPLATES.computeIfAbsent(config, c -> ConfigSnapshot.capture(c, 0));
+            }
+            configs.add(config);
+        }
+        if (previous != null) {
+            for (Map.Entry<Config, ConfigSnapshot> template : TEMPLATES.entrySet()) {
+                if (configs.contains(template.getKey())) continue;
+                synchronized (template.getKey()) {
+                    template.getValue().restore();
+                }
+            }
+        }
+
+        worldDir = dir;
+        int cached = 0;
+        Map<Config, ConfigSnapshot> snapshots = CACHE.computeIfAbsent(dir.getAbsoluteFile(), d -> new HashMap<>());
+        for (Config config : configs) {
+            synchronized (config) {
+                ConfigSnapshot snapshot = snapshots.get(config);
+                if (snapshot != null && snapshot.lastModified == getLastModified(config)) {
+                    snapshot.restore();
+                    cached++;
+                } else {
+                    // worlds without a file of their own start from the template, readers wait for the whole switch
+                    config.publish(() -> {
+                        TEMPLATES.get(config).restore();
+                        Configurator.readFromDisk(config);
+                    });
+                    snapshots.put(config, ConfigSnapshot.capture(config, getLastModified(config)));
+                }
+            }
+        }
+        Configurator.LOGGER.info("Switched {} world configs to {} in {} ms, {} from cache", configs.size(), dir.getPath(), System.currentTimeMillis() - time, cached);
+    }
+
+    private static long getLastModified(Config config) {
+        if (config.isSharded()) return ConfigShards.getLastModified(config);
+        ConfigFileIndex.Entry entry = config.getStorage().get(ConfigWriter.getConfigFile(config));
+        return entry != null ? entry.lastModified : 0;
+    }
+
+    /**
+     * Switches every world config back to its template.
+     */
+    public static synchronized void unload() {
+        worldDir = null;
+        for (Map.Entry<Config, ConfigSnapshot> template : TEMPLATES.entrySet()) {
+            synchronized (template.getKey()) {
+                template.getValue().restore();
+            }
+        }
+    }
+
+    /**
+     * Drops the cached snapshots of a config, so the next world switch reads its files again.
+     * @param config the config that changed
+     */
+    public static synchronized void invalidate(Config config) {
+        if (config.type != Config.Type.WORLD) return;
+        if (worldDir == null) TEMPLATES.remove(config);
+        for (Map<Config, ConfigSnapshot> snapshots : CACHE.values()) snapshots.remove(config);
+    }
+}
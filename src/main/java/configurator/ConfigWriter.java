@@ -2,26 +2,52 @@ package configurator;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import configurator.api.*;
 import mcp.MethodsReturnNonnullByDefault;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @ParametersAreNonnullByDefault
 @MethodsReturnNonnullByDefault
 public class ConfigWriter {
+    /** the system property that moves the top-level config folder */
+    public static final String ROOT_PROPERTY = "configurator.root";
     /** the top-level config folder */
-    public static final File CONFIG_DIR = new File("config");
-    protected static final Gson GSON = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+    public static final File CONFIG_DIR = new File(System.getProperty(ROOT_PROPERTY, "config"));
+    /** the storage that keeps config files on disk, inside {@link ConfigWriter#CONFIG_DIR} */
+    public static final FileConfigStorage DISK = new FileConfigStorage(CONFIG_DIR.toPath());
+    /** the gson instance config files are written with */
+    public static final Gson GSON = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+    private static final Map<Config, File> FILES = new ConcurrentHashMap<>();
+    private static volatile ConfigStorage storage = DISK;
+
+    /**
+     * Gets the storage of configs that do not have a storage of their own.
+     * @return the default storage
+     */
+    public static ConfigStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Sets the storage of configs that do not have a storage of their own. Configs that are already loaded keep their values.
+     * @param storage the new default storage
+     */
+    public static void setStorage(ConfigStorage storage) {
+        ConfigWriter.storage = storage;
+    }
 
     /**
      * Gets the folder path for this config to put into.
@@ -29,7 +55,23 @@ public class ConfigWriter {
      * @return a string of the config's full folder path
      */
     public static String getFolder(Config config) {
-        return config.type.getFolder(CONFIG_DIR.getPath() + (!config.folder.isEmpty() ? "/" + config.folder : ""));
+        File worldDir = config.type == Config.Type.WORLD ? ConfigWorlds.getWorldDir() : null;
+        if (worldDir != null) return worldDir.getPath() + (!config.folder.isEmpty() ? "/" + config.folder : "");
+        return getGlobalFolder(config);
+    }
+
+    /**
+     * Gets the folder path for this config inside the top-level config folder.
+     * For {@link Config.Type#WORLD} configs this is the folder of the template that new worlds start with.
+     * @param config the config
+     * @return a string of the config's full folder path
+     */
+    public static String getGlobalFolder(Config config) {
+        return getGlobalFolder(config.folder, config.type);
+    }
+
+    private static String getGlobalFolder(String folder, Config.Type type) {
+        return type.getFolder(CONFIG_DIR.getPath() + (!folder.isEmpty() ? "/" + folder : ""));
     }
 
     /**
@@ -38,12 +80,51 @@ public class ConfigWriter {
      * @return the config's {@link File}
      */
     public static File getConfigFile(Config config) {
-        Path path = Paths.get(getFolder(config) + "/" + config.name + ".json");
-        return path.toFile();
+        if (config.type == Config.Type.WORLD && ConfigWorlds.getWorldDir() != null) return Paths.get(getFolder(config) + "/" + config.name + ".json").toFile();
+        return getGlobalConfigFile(config);
+    }
+
+    /**
+     * Gets the config file for the given config inside the top-level config folder.
+     * @param config the config to get a file of
+     * @return the config's {@link File}
+     */
+    public static File getGlobalConfigFile(Config config) {
+        return FILES.computeIfAbsent(config, c -> Paths.get(getGlobalFolder(c) + "/" + c.name + ".json").toFile());
+    }
+
+    /**
+     * Gets the folder holding the shard files of a sharded config.
+     * @param config the config
+     * @return the shard folder
+     */
+    public static File getShardFolder(Config config) {
+        return new File(getFolder(config), config.name);
     }
 
     /**
-     * Directly writes a config file using a pre-built {@link JsonObject}
+     * Gets the file of a shard of a sharded config.
+     * @param config the config
+     * @param category the top-level category stored in the shard
+     * @return the shard file
+     */
+    public static File getShardFile(Config config, ConfigCategory category) {
+        return new File(getShardFolder(config), category.getName() + ".json");
+    }
+
+    /**
+     * Gets the file of a shard inside the top-level config folder.
+     * @param config the config
+     * @param category the top-level category stored in the shard
+     * @return the shard file
+     */
+    public static File getGlobalShardFile(Config config, ConfigCategory category) {
+        return new File(new File(getGlobalFolder(config), config.name), category.getName() + ".json");
+    }
+
+    /**
+     * Directly writes a config file using a pre-built {@link JsonObject}.
+     * If a config with that file is registered, the file is written like {@link ConfigWriter#writeConfigJson(Config, JsonObject)} does.
      * @param json the json object to write
      * @param fileName the name of the config file
      * @param folder the name of the folder to create the config file in
@@ -51,30 +132,163 @@ public class ConfigWriter {
      * @return if the write operation was successful
      */
     public static boolean writeConfigJson(JsonObject json, String fileName, String folder, Config.Type type) {
-        String folderName = !folder.isEmpty() ? "/" + folder : "";
-        if (!initFolder(new File(type.getFolder(CONFIG_DIR.getPath() + folderName)))) throw new NullPointerException();
+        Config config = Configurator.getConfig(folder, fileName, type);
+        if (config != null) return writeConfigJson(config, json);
+        return writeConfigJson(getStorage(), new File(getGlobalFolder(folder, type), fileName + ".json"), json);
+    }
 
-        Path path = Paths.get(CONFIG_DIR.getPath() + folderName + "/" + fileName + ".json");
+    /**
+     * Directly writes the file of a config using a pre-built {@link JsonObject}, in the storage of the config.
+     * @param config the config whose file is written, which must not exist yet
+     * @param json the json object to write
+     * @return if the write operation was successful
+     */
+    public static boolean writeConfigJson(Config config, JsonObject json) {
+        return writeConfigJson(config.getStorage(), getConfigFile(config), json);
+    }
 
-        if (path.toFile().exists()) throw new IllegalStateException(String.format("Config file %s already exists!", fileName));
-        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+    private static boolean writeConfigJson(ConfigStorage storage, File file, JsonObject json) {
+        if (!initFolder(storage, file.getParentFile())) throw new NullPointerException();
+
+        if (storage.exists(file)) throw new IllegalStateException(String.format("Config file %s already exists!", file.getName()));
+        try (Writer writer = storage.newWriter(file)) {
             writer.write(GSON.toJson(json));
             return true;
         } catch (IOException e) {
             Configurator.LOGGER.error(e);
             return false;
+        } finally {
+            storage.refresh(file);
         }
     }
 
     /**
      * Writes a config to a .json file.
      * @param config the config to write
+     * @return if the file was written
      */
-    public static void writeConfig(Config config) {
-        JsonObject json = serialize(config);
-        String name = config.name + ".json";
-        String folderName = getFolder(config);
-        writeConfigJson(json, name, new File(folderName));
+    public static boolean writeConfig(Config config) {
+        ConfigStorage storage = config.getStorage();
+        if (!initFolder(storage, new File(getFolder(config)))) throw new NullPointerException("Could not write config!");
+
+        File file = getConfigFile(config);
+        try (ConfigSync.Lock lock = ConfigSync.lock(config)) {
+            if (storage.exists(file)) throw new IllegalStateException(String.format("Config %s already exists!", file.getName()));
+            try (JsonWriter writer = newJsonWriter(storage.newWriter(file))) {
+                write(config, writer);
+                return true;
+            } catch (IOException e) {
+                Configurator.LOGGER.error(e);
+                return false;
+            } finally {
+                storage.refresh(file);
+                ConfigSync.changed(config);
+            }
+        }
+    }
+
+    /**
+     * Writes the current values of a config over its files. Sharded configs write every loaded shard.
+     * @param config the config to save
+     * @return if every file was written
+     */
+    public static boolean saveConfig(Config config) {
+        synchronized (config) {
+            try (ConfigSync.Lock lock = ConfigSync.lock(config)) {
+                if (!config.isSharded()) return replace(config, getConfigFile(config), writer -> write(config, writer));
+                boolean written = true;
+                for (ConfigCategory category : config.categories)
+                    if (config.isShardLoaded(category)) written &= replaceShard(config, category);
+                return written;
+            }
+        }
+    }
+
+    private static boolean replaceShard(Config config, ConfigCategory category) {
+        return replace(config, getShardFile(config, category), writer -> {
+            writer.beginObject();
+            writeCategory(writer, category);
+            writer.endObject();
+        });
+    }
+
+    /**
+     * Replaces a file of a config in one step, so other readers and processes never see it half written.
+     * @param config the config the file belongs to
+     * @param file the file to replace
+     * @param content writes the json of the file
+     * @return if the file was written, the old file is left as it was otherwise
+     */
+    private static boolean replace(Config config, File file, JsonContent content) {
+        ConfigStorage storage = config.getStorage();
+        if (!initFolder(storage, file.getParentFile())) return false;
+        try (ConfigSync.Lock lock = ConfigSync.lock(config)) {
+            storage.replace(file, writer -> {
+                JsonWriter json = newJsonWriter(writer);
+                content.write(json);
+                json.flush();
+            });
+            ConfigSync.changed(config);
+            return true;
+        } catch (IOException e) {
+            Configurator.LOGGER.error(e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes a shard of a sharded config to its .json file. The file holds the category the same way a full config file would.
+     * @param config the config to write
+     * @param category the top-level category of the shard
+     * @return if the file was written
+     */
+    public static boolean writeShard(Config config, ConfigCategory category) {
+        ConfigStorage storage = config.getStorage();
+        File file = getShardFile(config, category);
+        if (!initFolder(storage, file.getParentFile())) throw new NullPointerException("Could not write config!");
+
+        try (ConfigSync.Lock lock = ConfigSync.lock(config)) {
+            if (storage.exists(file)) throw new IllegalStateException(String.format("Config shard %s already exists!", file.getPath()));
+            try (JsonWriter writer = newJsonWriter(storage.newWriter(file))) {
+                writer.beginObject();
+                writeCategory(writer, category);
+                writer.endObject();
+                return true;
+            } catch (IOException e) {
+                Configurator.LOGGER.error(e);
+                return false;
+            } finally {
+                storage.refresh(file);
+                ConfigSync.changed(config);
+            }
+        }
+    }
+
+    /**
+     * Streams a config into a {@link JsonWriter} without building a json tree first.
+     * Writing with {@link ConfigWriter#newJsonWriter(Writer)} gives the same output as {@link ConfigWriter#serialize(Config)}.
+     * @param config the config to write
+     * @param writer the json writer to write into
+     * @throws IOException if the writer fails
+     */
+    public static void write(Config config, JsonWriter writer) throws IOException {
+        writer.beginObject();
+        for (ConfigCategory category : config.categories) writeCategory(writer, category);
+        writer.endObject();
+    }
+
+    /**
+     * Creates a json writer with the same formatting as the config gson.
+     * @param writer the writer to write into
+     * @return the json writer
+     */
+    public static JsonWriter newJsonWriter(Writer writer) {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        jsonWriter.setIndent("  ");
+        jsonWriter.setLenient(true);
+        jsonWriter.setHtmlSafe(false);
+        jsonWriter.setSerializeNulls(false);
+        return jsonWriter;
     }
 
     /**
@@ -82,10 +296,35 @@ public class ConfigWriter {
      * @param config the config to read
      */
     public static void readConfig(Config config) {
-        JsonObject json = readConfigJson(config.name + ".json", new File(getFolder(config)));
+        JsonObject json;
+        try (ConfigTracer.Span span = ConfigTracer.begin("parse", config)) {
+            json = readConfigJson(config.getStorage(), getConfigFile(config));
+        }
         if (json == null) throw new NullPointerException("Could not read config json!");
 
-        for (ConfigCategory category : config.categories) readCategory(json, category);
+        try (ConfigTracer.Span span = ConfigTracer.begin("deserialize", config)) {
+            for (ConfigCategory category : config.categories) readCategory(json, category);
+        }
+        Configurator.applyConstraints(config, null, getConfigFile(config));
+        config.updateDerived();
+    }
+
+    /**
+     * Puts the values of an already parsed config json into the config values.
+     * Values missing from the json keep their current value.
+     * @param config the config to read into
+     * @param json the parsed config json
+     */
+    public static void readConfig(Config config, JsonObject json) {
+        boolean update;
+        try (ConfigTracer.Span span = ConfigTracer.begin("validate", config)) {
+            update = !jsonMatchesConfig(json, config);
+        }
+        try (ConfigTracer.Span span = ConfigTracer.begin("deserialize", config)) {
+            for (ConfigCategory category : config.categories) readCategory(json, category, update);
+        }
+        Configurator.applyConstraints(config, null, getConfigFile(config));
+        config.updateDerived();
     }
 
     /**
@@ -104,18 +343,40 @@ public class ConfigWriter {
     private static void writeCategory(JsonObject parent, ConfigCategory category) {
         JsonObject categoryJson = new JsonObject();
 
-        for (ConfigValue<?> value : category.getValues()) value.writeToJson(categoryJson);
+        for (ConfigValue<?> value : category.getValues()) {
+            // values replaced by a higher layer keep what the file holds
+            JsonElement fileValue = ConfigOverlays.getFileValue(value);
+            if (fileValue != null) categoryJson.add(value.getName(), fileValue);
+            else value.writeToJson(categoryJson);
+        }
         for (ConfigCategory subCategory : category.getSubCategories()) writeCategory(categoryJson, subCategory);
 
         parent.add(category.getName(), categoryJson);
     }
 
-    private static boolean initFolder(File dir) {
-        if (!dir.exists() && !dir.mkdir()) {
-            Configurator.LOGGER.error("Could not make folder at {}", dir.getAbsolutePath());
-            return false;
+    private static void writeCategory(JsonWriter writer, ConfigCategory category) throws IOException {
+        writer.name(category.getName());
+        writer.beginObject();
+
+        for (ConfigValue<?> value : category.getValues()) {
+            JsonElement fileValue = ConfigOverlays.getFileValue(value);
+            if (fileValue == null) value.writeToJson(writer);
+            else {
+                writer.name(value.getName());
+                GSON.toJson(fileValue, writer);
+            }
         }
-        return true;
+        for (ConfigCategory subCategory : category.getSubCategories()) writeCategory(writer, subCategory);
+
+        writer.endObject();
+    }
+
+    protected static boolean initFolder(File dir) {
+        return initFolder(DISK, dir);
+    }
+
+    protected static boolean initFolder(ConfigStorage storage, File dir) {
+        return storage.isDirectory(dir) || storage.makeFolder(dir);
     }
 
     private static boolean validateCategory(JsonObject json, ConfigCategory category) {
@@ -131,29 +392,10 @@ public class ConfigWriter {
         return true;
     }
 
-    private static void writeConfigJson(JsonObject json, String name, File folder) {
-        if (!initFolder(folder)) throw new NullPointerException("Could not write config!");
-
-        String fileName = folder.getPath() + "/" + name;
-        Path path = Paths.get(fileName);
-
-        if (path.toFile().exists()) throw new IllegalStateException(String.format("Config %s already exists!", name));
-        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
-            writer.write(GSON.toJson(json));
-        } catch (IOException e) {
-            Configurator.LOGGER.error(e);
-        }
-    }
-
     @Nullable
-    private static JsonObject readConfigJson(String name, File folder) {
-        if (!folder.exists()) throw new NullPointerException("Attempt to read config from non-existent folder!");
-
-        String fileName = folder.getPath() + "/" + name;
-        Path path = Paths.get(fileName);
-
-        if (!path.toFile().exists()) throw new NullPointerException("Attempt to read json from non-existent config file!");
-        try (BufferedReader reader = Files.newBufferedReader(path)) {
+    protected static JsonObject readConfigJson(ConfigStorage storage, File file) {
+        if (!storage.exists(file)) throw new NullPointerException("Attempt to read json from non-existent config file!");
+        try (Reader reader = storage.newReader(file)) {
             return GSON.fromJson(reader, JsonObject.class);
         } catch (IOException e) {
             Configurator.LOGGER.error(e);
@@ -169,61 +411,109 @@ public class ConfigWriter {
         }
 
         for (ConfigValue<?> value : category.getValues()) {
-            if (categoryJson.has(value.getName())) {
-                if (value instanceof BooleanConfigValue) ((BooleanConfigValue)value).set(categoryJson.get(value.getName()).getAsBoolean());
-                else if (value instanceof StringConfigValue) ((StringConfigValue)value).set(categoryJson.get(value.getName()).getAsString());
-                else if (value instanceof IntegerConfigValue) ((IntegerConfigValue)value).set(categoryJson.get(value.getName()).getAsInt());
-                else if (value instanceof FloatConfigValue) ((FloatConfigValue)value).set(categoryJson.get(value.getName()).getAsFloat());
-                else if (value instanceof DoubleConfigValue) ((DoubleConfigValue)value).set(categoryJson.get(value.getName()).getAsDouble());
-                else if (value instanceof ByteConfigValue) ((ByteConfigValue)value).set(categoryJson.get(value.getName()).getAsByte());
-                else if (value instanceof ShortConfigValue) ((ShortConfigValue)value).set(categoryJson.get(value.getName()).getAsShort());
-                else if (value instanceof LongConfigValue) ((LongConfigValue)value).set(categoryJson.get(value.getName()).getAsLong());
-                else if (value instanceof JsonConfigValue) ((JsonConfigValue)value).set(categoryJson.getAsJsonObject(value.getName()));
-                else if (value instanceof ArrayConfigValue) ((ArrayConfigValue)value).set(categoryJson.getAsJsonArray(value.getName()));
-            }
+            if (categoryJson.has(value.getName())) readValue(value, categoryJson.get(value.getName()), ConfigLayer.FILE);
         }
 
         for (ConfigCategory subCategory : category.getSubCategories()) readCategory(categoryJson, subCategory, update);
     }
 
+    /**
+     * Puts a json element into a config value, converting it to the type of the value.
+     * @param value the config value to set
+     * @param element the json element to read
+     * @param layer the layer the element came from
+     * @return if the value was set, false if values of its type can not be read from json
+     */
+    protected static boolean readValue(ConfigValue<?> value, JsonElement element, ConfigLayer layer) {
+        if (value instanceof BooleanConfigValue) ((BooleanConfigValue)value).set(element.getAsBoolean());
+        else if (value instanceof StringConfigValue) ((StringConfigValue)value).set(element.getAsString());
+        else if (value instanceof IntegerConfigValue) ((IntegerConfigValue)value).set(element.getAsInt());
+        else if (value instanceof FloatConfigValue) ((FloatConfigValue)value).set(element.getAsFloat());
+        else if (value instanceof DoubleConfigValue) ((DoubleConfigValue)value).set(element.getAsDouble());
+        else if (value instanceof ByteConfigValue) ((ByteConfigValue)value).set(element.getAsByte());
+        else if (value instanceof ShortConfigValue) ((ShortConfigValue)value).set(element.getAsShort());
+        else if (value instanceof LongConfigValue) ((LongConfigValue)value).set(element.getAsLong());
+        else if (value instanceof JsonConfigValue) ((JsonConfigValue)value).set(element.getAsJsonObject());
+        else if (value instanceof ArrayConfigValue) ((ArrayConfigValue)value).set(element.getAsJsonArray());
+        else {
+            Configurator.LOGGER.warn("Can not read {} value {} of type {}, it keeps its current value", layer.name().toLowerCase(Locale.ROOT), value.getPath(), value.getClass().getName());
+            return false;
+        }
+        value.setLayer(layer);
+        return true;
+    }
+
     private static void readCategory(JsonObject json, ConfigCategory category) {
         readCategory(json, category, false);
     }
 
     protected static boolean jsonMatchesConfig(File jsonFile, Config config) {
-        if (jsonFile.exists()) {
+        ConfigStorage storage = config.getStorage();
+        if (storage.exists(jsonFile)) {
             JsonObject json;
 
-            try (BufferedReader reader = Files.newBufferedReader(jsonFile.toPath())) {
+            try (ConfigTracer.Span span = ConfigTracer.begin("parse", config); Reader reader = storage.newReader(jsonFile)) {
                 json = GSON.fromJson(reader, JsonObject.class);
             } catch (IOException e) {
                 Configurator.LOGGER.error(e);
                 return false;
             }
 
-            for (ConfigCategory category : config.categories)
-                if (!validateCategory(json, category)) return false;
-
-            return true;
+            try (ConfigTracer.Span span = ConfigTracer.begin("validate", config)) {
+                return jsonMatchesConfig(json, config);
+            }
         }
         return false;
     }
 
-    protected static void updateConfig(File jsonFile, Config config, boolean alreadyChecked) {
-        if (jsonFile.exists() && (alreadyChecked || !jsonMatchesConfig(jsonFile, config))) {
-            JsonObject json;
+    protected static boolean jsonMatchesConfig(JsonObject json, Config config) {
+        for (ConfigCategory category : config.categories)
+            if (!validateCategory(json, category)) return false;
 
-            try (BufferedReader reader = Files.newBufferedReader(jsonFile.toPath())) {
-                json = GSON.fromJson(reader, JsonObject.class);
-            } catch (IOException e) {
-                Configurator.LOGGER.error(e);
-                return;
-            }
+        return true;
+    }
+
+    protected static boolean jsonMatchesShard(JsonObject json, ConfigCategory category) {
+        return validateCategory(json, category);
+    }
+
+    /**
+     * Rewrites a shard file that is missing values, keeping the values it has.
+     * @param json the parsed shard file
+     * @param config the config
+     * @param category the top-level category of the shard
+     */
+    protected static void updateShard(JsonObject json, Config config, ConfigCategory category) {
+        try (ConfigSync.Lock lock = ConfigSync.lock(config)) {
+            readCategory(json, category, true);
+            if (!replaceShard(config, category)) Configurator.LOGGER.error("Could not overwrite config shard!");
+        }
+    }
+
+    protected static void updateConfig(File jsonFile, Config config, boolean alreadyChecked) {
+        ConfigStorage storage = config.getStorage();
+        try (ConfigSync.Lock lock = ConfigSync.lock(config)) {
+            if (storage.exists(jsonFile) && (alreadyChecked || !jsonMatchesConfig(jsonFile, config))) {
+                JsonObject json;
+
+                try (Reader reader = storage.newReader(jsonFile)) {
+                    json = GSON.fromJson(reader, JsonObject.class);
+                } catch (IOException e) {
+                    Configurator.LOGGER.error(e);
+                    return;
+                }
 
-            if (jsonFile.delete()) {
                 for (ConfigCategory category : config.categories) readCategory(json, category, true);
-                writeConfig(config);
-            } else Configurator.LOGGER.error("Could not overwrite config!");
+                if (!replace(config, jsonFile, writer -> write(config, writer))) Configurator.LOGGER.error("Could not overwrite config!");
+            }
         }
     }
+
+    /**
+     * Writes the json of a config file.
+     */
+    @FunctionalInterface
+    private interface JsonContent {
+        void write(JsonWriter writer) throws IOException;
+    }
 }
@@ -1,14 +1,24 @@
 package configurator;
 
+import com.google.gson.JsonObject;
 import configurator.api.Config;
+import configurator.api.ConfigCategory;
 import configurator.api.ConfigValue;
+import configurator.api.ItemStackConfigValue;
+import configurator.api.RegistryBound;
 import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.server.MinecraftServer;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.event.FMLConstructionEvent;
+import net.minecraftforge.fml.common.event.FMLLoadCompleteEvent;
+import net.minecraftforge.fml.common.event.FMLModIdMappingEvent;
+import net.minecraftforge.fml.common.event.FMLServerAboutToStartEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppedEvent;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.File;
 import java.util.ArrayList;
@@ -22,25 +32,32 @@ public class Configurator {
     public static final String MOD_ID = "configurator";
     public static final Logger LOGGER = LogManager.getLogger(MOD_ID);
     public static final ConfigValue<Boolean> CONTAINED;
+    public static final ConfigValue<Boolean> PREFETCH_LAZY;
+    public static final ConfigValue<Boolean> PROFILE_READS;
 
-    protected static final List<Config> CONFIGS = new ArrayList<>();
+    protected static final ConfigRegistry CONFIGS = new ConfigRegistry();
 
     private static final Config MAIN_CONFIG;
+    /** the config the current thread is loading or reloading */
+    private static final ThreadLocal<Config> LOADING = new ThreadLocal<>();
+    private static volatile boolean registriesReady = false;
 
     static {
         Config.Builder builder = Config.Builder.builder("").ofType(Config.Type.UNCATEGORIZED).withName("Configurator");
 
         builder.push("general");
         CONTAINED = builder.define("contain_in_one_folder", false);
+        PREFETCH_LAZY = builder.define("prefetch_lazy_configs", false);
+        PROFILE_READS = builder.define("profile_reads", false);
         builder.pop();
 
         MAIN_CONFIG = builder.build();
-        CONFIGS.add(0, MAIN_CONFIG);
+        CONFIGS.register(MAIN_CONFIG);
     }
 
     private static void forceLoadConfig() {
         if (!MAIN_CONFIG.isLoaded()) {
-            loadConfig(MAIN_CONFIG, false, true);
+            loadConfig(MAIN_CONFIG, false);
         }
     }
 
@@ -48,36 +65,276 @@ public class Configurator {
     public void construction(FMLConstructionEvent event) {
         boolean isClient = FMLCommonHandler.instance().getSide().isClient();
         long time = System.currentTimeMillis();
-        for (Config config : CONFIGS) {
-            Config.Type category = config.type;
-            if ((category == Config.Type.COMMON || category == Config.Type.UNCATEGORIZED) || (category == Config.Type.CLIENT && isClient) || (category == Config.Type.SERVER && !isClient))
-                loadConfig(config, false, false);
+        ConfigFileIndex.scan();
+        List<Config> configs = CONFIGS.snapshot();
+        List<Config> lazy = new ArrayList<>();
+        for (Config config : configs) {
+            if (!isOnSide(config, isClient)) continue;
+            if (config.isLazy()) lazy.add(config);
+            else loadConfig(config, false);
         }
-        LOGGER.info("Loaded {} configs in {} ms", CONFIGS.size(), System.currentTimeMillis() - time);
+        LOGGER.info("Loaded {} configs in {} ms, {} lazy", configs.size() - lazy.size(), System.currentTimeMillis() - time, lazy.size());
+        ConfigTracer.write();
+        ConfigSchema.exportIfRequested();
+        ConfigRemote.startRefreshing();
+        ConfigSync.start();
+
+        if (!lazy.isEmpty() && Boolean.TRUE.equals(PREFETCH_LAZY.get())) prefetch(lazy);
     }
 
-    protected static void loadConfig(Config config, boolean log, boolean remove) {
-        if (!config.isLoaded()) {
+    @Mod.EventHandler
+    public void loadComplete(FMLLoadCompleteEvent event) {
+        registriesReady = true;
+        resolveRegistryValues();
+    }
+
+    @Mod.EventHandler
+    public void idMapping(FMLModIdMappingEvent event) {
+        ItemStackCache.invalidate();
+        // stacks deserialized before the items were registered or remapped are read again
+        for (Config config : CONFIGS.snapshot()) {
+            if (!config.isLoaded()) continue;
+            synchronized (config) {
+                config.publish(() -> {
+                    for (ConfigValue<?> value : config.getValues())
+                        if (value instanceof ItemStackConfigValue) ((ItemStackConfigValue)value).refresh();
+                    config.updateDerived();
+                });
+            }
+        }
+        if (registriesReady) resolveRegistryValues();
+    }
+
+    private static void resolveRegistryValues() {
+        for (Config config : CONFIGS.snapshot()) {
+            if (!config.isLoaded()) continue;
+            synchronized (config) {
+                config.publish(() -> {
+                    for (ConfigValue<?> value : config.getValues())
+                        if (value instanceof RegistryBound) ((RegistryBound)value).resolve();
+                    config.updateDerived();
+                });
+            }
+        }
+    }
+
+    /**
+     * Checks if every registry is complete, registry bound values resolve their entries from then on.
+     * @return if the registries are ready
+     */
+    public static boolean areRegistriesReady() {
+        return registriesReady;
+    }
+
+    @Mod.EventHandler
+    public void serverAboutToStart(FMLServerAboutToStartEvent event) {
+        MinecraftServer server = event.getServer();
+        ConfigWorlds.load(server.getActiveAnvilConverter().getFile(server.getFolderName(), ConfigWorlds.FOLDER));
+    }
+
+    @Mod.EventHandler
+    public void serverStopped(FMLServerStoppedEvent event) {
+        ConfigPlayers.unloadAll();
+        ConfigWorlds.unload();
+    }
+
+    private static boolean isOnSide(Config config, boolean isClient) {
+        Config.Type category = config.type;
+        return (category == Config.Type.COMMON || category == Config.Type.UNCATEGORIZED || category == Config.Type.WORLD) || (category == Config.Type.CLIENT && isClient) || (category == Config.Type.SERVER && !isClient);
+    }
+
+    private static void prefetch(List<Config> configs) {
+        Thread thread = new Thread(() -> {
+            long time = System.currentTimeMillis();
+            for (Config config : configs) loadConfig(config, false);
+            LOGGER.info("Prefetched {} lazy configs in {} ms", configs.size(), System.currentTimeMillis() - time);
+            ConfigTracer.write();
+        }, "Configurator Prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Loads a config if it has not already been loaded. Loaded configs stay registered, the load phase and everything
+     * that walks the registry skip or include them through {@link Config#isLoaded()}.
+     * @param config the config to load
+     * @param log if the load time is logged
+     */
+    protected static void loadConfig(Config config, boolean log) {
+        if (config.isLoaded()) return;
+        synchronized (config) {
+            if (config.isLoaded()) return;
             long time = System.currentTimeMillis();
-            if (remove) CONFIGS.remove(config);
             if (config != MAIN_CONFIG) forceLoadConfig();
 
-            File file = ConfigWriter.getConfigFile(config);
-            if (!file.exists()) ConfigWriter.writeConfig(config);
-            else if (!ConfigWriter.jsonMatchesConfig(file, config)) ConfigWriter.updateConfig(file, config, true);
-            ConfigWriter.readConfig(config);
-            config.loaded();
+            Config loading = LOADING.get();
+            LOADING.set(config);
+            try (ConfigTracer.Span span = ConfigTracer.begin("load", config)) {
+                try (ConfigSync.Lock lock = ConfigSync.lock(config)) {
+                    if (config.getRemoteUrl() != null) ConfigRemote.fetch(config);
+                    readFromDisk(config);
+                }
+                config.loaded();
+            } finally {
+                LOADING.set(loading);
+            }
+            if (config == MAIN_CONFIG && Boolean.TRUE.equals(PROFILE_READS.get())) ConfigProfiler.setEnabled(true);
 
             if (log) LOGGER.info("Loaded config {} in {} ms", config.name, System.currentTimeMillis() - time);
         }
     }
 
+    /**
+     * Makes sure the file of a config exists and matches the config, then resolves the config values from it.
+     * @param config the config to read
+     */
+    protected static void readFromDisk(Config config) {
+        if (config.isSharded()) {
+            ConfigShards.load(config);
+            try (ConfigTracer.Span derive = ConfigTracer.begin("derive", config)) {
+                config.updateDerived();
+            }
+            return;
+        }
+
+        File file;
+        boolean exists;
+        try (ConfigTracer.Span resolve = ConfigTracer.begin("resolve", config)) {
+            file = ConfigWriter.getConfigFile(config);
+            exists = config.getStorage().exists(file);
+        }
+
+        ConfigBundle bundle = exists || ConfigWorlds.isWorldFile(config) ? null : ConfigBundle.get();
+        JsonObject bundled = null;
+        if (bundle != null) {
+            try (ConfigTracer.Span bind = ConfigTracer.begin("bind", config)) {
+                bundled = bundle.read(config);
+            }
+        }
+
+        if (bundled == null) {
+            if (!exists) {
+                try (ConfigTracer.Span write = ConfigTracer.begin("write", config)) {
+                    ConfigWriter.writeConfig(config);
+                }
+            } else if (!ConfigWriter.jsonMatchesConfig(file, config)) {
+                try (ConfigTracer.Span migrate = ConfigTracer.begin("migrate", config)) {
+                    ConfigWriter.updateConfig(file, config, true);
+                }
+            }
+        }
+        resolveConfig(config, bundled);
+    }
+
+    private static void resolveConfig(Config config, @Nullable JsonObject bundled) {
+        JsonObject json = bundled;
+        if (json == null) {
+            try (ConfigTracer.Span parse = ConfigTracer.begin("parse", config)) {
+                File file = ConfigWriter.getConfigFile(config);
+                ConfigStorage storage = config.getStorage();
+                if (storage.exists(file)) json = ConfigWriter.readConfigJson(storage, file);
+            }
+        }
+        try (ConfigTracer.Span deserialize = ConfigTracer.begin("deserialize", config)) {
+            ConfigOverlays.resolve(config, json);
+        }
+        try (ConfigTracer.Span validate = ConfigTracer.begin("validate", config)) {
+            applyConstraints(config, null, ConfigWriter.getConfigFile(config));
+        }
+        try (ConfigTracer.Span derive = ConfigTracer.begin("derive", config)) {
+            config.updateDerived();
+        }
+    }
+
+    /**
+     * Fixes the invalid constrained values of a config, and reports them in a single warning.
+     * @param config the config
+     * @param shard the shard to check, or null to check the whole config
+     * @param file the file the values were read from
+     */
+    protected static void applyConstraints(Config config, @Nullable ConfigCategory shard, File file) {
+        List<String> problems = config.applyConstraints(shard);
+        if (!problems.isEmpty()) LOGGER.warn("Config file {} has {} invalid values:\n  {}", file.getPath(), problems.size(), String.join("\n  ", problems));
+    }
+
+    /**
+     * <p>
+     * Reads the given config and its override layers again.
+     * </p>
+     * values that are no longer defined by any layer go back to their defaults. loads the config if it is not loaded yet.
+     * @param config the config to reload
+     */
+    public static void reloadConfig(Config config) {
+        if (!config.isLoaded()) {
+            loadConfig(config);
+            return;
+        }
+        synchronized (config) {
+            long time = System.currentTimeMillis();
+            Config loading = LOADING.get();
+            LOADING.set(config);
+            // readers wait for the whole reload, the values of changes made by other processes appear at once
+            try (ConfigSync.Lock lock = ConfigSync.lock(config, true)) {
+                config.publish(() -> {
+                    if (config.isSharded()) {
+                        int reloaded;
+                        try (ConfigTracer.Span span = ConfigTracer.begin("reload", config)) {
+                            reloaded = ConfigShards.reload(config);
+                        }
+                        LOGGER.info("Reloaded {} of {} shards of config {} in {} ms", reloaded, config.categories.size(), config.name, System.currentTimeMillis() - time);
+                    } else reloadFile(config, time);
+                });
+            } finally {
+                LOADING.set(loading);
+            }
+        }
+        ConfigWorlds.invalidate(config);
+    }
+
+    private static void reloadFile(Config config, long time) {
+        try (ConfigTracer.Span span = ConfigTracer.begin("reload", config)) {
+            ConfigStorage storage = config.getStorage();
+            File file = ConfigWriter.getConfigFile(config);
+            storage.refresh(file);
+            storage.refresh(ConfigOverlays.getOverrideFile(config));
+            ConfigBundle bundle = storage.exists(file) || ConfigWorlds.isWorldFile(config) ? null : ConfigBundle.get();
+            resolveConfig(config, bundle != null ? bundle.read(config) : null);
+        }
+        LOGGER.info("Reloaded config {} in {} ms", config.name, System.currentTimeMillis() - time);
+    }
+
+    private static void loadLazyConfig(Config config) {
+        // values read while the config is loading on this thread keep their defaults
+        if (Thread.holdsLock(config)) return;
+        Config loading = LOADING.get();
+        if (loading != null) {
+            // loading here could wait for a thread that loads this config and reads the one loading here
+            LOGGER.warn("Config {} was read while loading config {}, it keeps its defaults until it is read outside of a load", config.name, loading.name);
+            return;
+        }
+        try {
+            loadConfig(config, true);
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not load config {}, its values keep their defaults", config.name);
+            LOGGER.error(e);
+            synchronized (config) {
+                if (config.isLoaded()) return;
+                // marking it loaded stops every later read from trying again, a reload can still read the file
+                config.publish(() -> {
+                    for (ConfigValue<?> value : config.getValues()) value.reset();
+                    config.updateDerived();
+                });
+                config.loaded();
+            }
+        }
+    }
+
     /**
      * Loads the given config if it has not already been loaded
      * @param config The config to load
      */
     public static void loadConfig(Config config) {
-        loadConfig(config, true, true);
+        loadConfig(config, true);
     }
 
     /**
@@ -86,10 +343,43 @@ public class Configurator {
      * @return the config that was registered
      */
     public static Config registerConfig(Config config) {
-        CONFIGS.add(config);
+        try (ConfigTracer.Span span = ConfigTracer.begin("register", config)) {
+            CONFIGS.register(config);
+        }
         return config;
     }
 
+    /**
+     * Looks up a registered config by its file.
+     * @param folder the folder of the config
+     * @param name the file name of the config
+     * @param type the type category of the config
+     * @return the config, or null if no such config is registered
+     */
+    @Nullable
+    public static Config getConfig(String folder, String name, Config.Type type) {
+        return CONFIGS.get(folder, name, type);
+    }
+
+    /**
+     * <p>
+     * registers a config to be loaded the first time one of its values is read, instead of on mod construction.
+     * </p>
+     * the load happens once, on whichever thread reads first. if prefetch_lazy_configs is enabled,
+     * lazy configs are loaded on a background thread after mod construction. if the load fails, the config keeps
+     * its defaults until it is reloaded. code that runs while another config loads, such as serializers and constraints,
+     * must not read lazy configs: those reads return defaults and log a warning instead of loading, since a load
+     * nested in another could deadlock with a thread loading the two configs the other way around.
+     * @param config the config to register
+     * @return the config that was registered
+     */
+    public static Config registerLazyConfig(Config config) {
+        try (ConfigTracer.Span span = ConfigTracer.begin("bind", config)) {
+            config.bindLazy(() -> loadLazyConfig(config));
+        }
+        return registerConfig(config);
+    }
+
     @Deprecated
     public static Config registerConfig(Config.Builder builder) {
         return registerConfig(builder.build());
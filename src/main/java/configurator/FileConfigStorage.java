@@ -0,0 +1,116 @@
+package configurator;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * A {@link ConfigStorage} that keeps config files on disk, under a root folder.
+ * </p>
+ * Files inside {@link ConfigWriter#CONFIG_DIR} are moved under the root, other files such as world configs stay where they are.
+ * Lookups go through the {@link ConfigFileIndex}, which covers the config folder.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class FileConfigStorage implements ConfigStorage {
+    private static final int BUFFER_SIZE = 8192;
+    protected final Path root;
+
+    /**
+     * @param root the folder that takes the place of the config folder
+     */
+    public FileConfigStorage(Path root) {
+        this.root = root.normalize();
+    }
+
+    /**
+     * Gets the folder that takes the place of the config folder.
+     * @return the root folder
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public Path getPath(File file) {
+        Path path = file.toPath().normalize();
+        Path dir = ConfigWriter.CONFIG_DIR.toPath().normalize();
+        if (root.equals(dir) || !path.startsWith(dir)) return path;
+        return root.resolve(dir.relativize(path));
+    }
+
+    @Override
+    @Nullable
+    public ConfigFileIndex.Entry get(File file) {
+        return ConfigFileIndex.get(getPath(file).toFile());
+    }
+
+    @Override
+    public Reader newReader(File file) throws IOException {
+        return Files.newBufferedReader(getPath(file), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Writer newWriter(File file) throws IOException {
+        FileChannel channel = FileChannel.open(getPath(file), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        return Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE);
+    }
+
+    @Override
+    public void replace(File file, Content content) throws IOException {
+        Path path = getPath(file);
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Channels.newWriter(FileChannel.open(temp, StandardOpenOption.WRITE), StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE)) {
+                content.write(writer);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+            ConfigFileIndex.update(path.toFile());
+        }
+    }
+
+    @Override
+    public boolean delete(File file) {
+        File path = getPath(file).toFile();
+        boolean deleted = path.delete();
+        ConfigFileIndex.update(path);
+        return deleted;
+    }
+
+    @Override
+    public boolean makeFolder(File dir) {
+        File path = getPath(dir).toFile();
+        if (ConfigFileIndex.isDirectory(path)) return true;
+        if (!path.mkdirs() && !path.isDirectory()) {
+            Configurator.LOGGER.error("Could not make folder at {}", path.getAbsolutePath());
+            return false;
+        }
+        for (File parent = path; parent != null && !ConfigFileIndex.isDirectory(parent); parent = parent.getParentFile()) ConfigFileIndex.update(parent);
+        return true;
+    }
+
+    @Override
+    public void refresh(File file) {
+        ConfigFileIndex.update(getPath(file).toFile());
+    }
+}
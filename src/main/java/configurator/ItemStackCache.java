@@ -0,0 +1,132 @@
+package configurator;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.JsonToNBT;
+import net.minecraft.nbt.NBTException;
+import net.minecraft.nbt.NBTTagCompound;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A bounded cache of parsed item stack strings, shared by every {@link configurator.api.ItemStackConfigValue}.
+ * </p><p>
+ * Item strings repeated across many values and configs are only parsed once. The cache keeps one template per string
+ * and hands out copies, so callers can never change the cached template.
+ * </p>
+ * The cache is cleared when the registry ids are remapped, as cached stacks might point to stale items.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ItemStackCache {
+    private static final int MAX_SIZE = 4096;
+    private static final Map<String, CachedStack> CACHE = new LinkedHashMap<String, CachedStack>(256, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedStack> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    /**
+     * Gets a copy of the item stack that the given string describes.
+     * @param serialized the item stack as an nbt string
+     * @return a new item stack, or {@link ItemStack#EMPTY} if the string is invalid
+     */
+    public static ItemStack getStack(String serialized) {
+        CachedStack entry = get(serialized);
+        return entry.stack != null ? entry.stack.copy() : ItemStack.EMPTY;
+    }
+
+    /**
+     * Gets a copy of the nbt tag that the given string describes.
+     * @param serialized the nbt string
+     * @return a new nbt tag, or null if the string is invalid
+     */
+    @Nullable
+    public static NBTTagCompound getTag(String serialized) {
+        CachedStack entry = get(serialized);
+        return entry.tag != null ? entry.tag.copy() : null;
+    }
+
+    private static CachedStack get(String serialized) {
+        CachedStack entry;
+        synchronized (CACHE) {
+            entry = CACHE.get(serialized);
+        }
+        if (entry != null) {
+            HITS.increment();
+            return entry;
+        }
+
+        MISSES.increment();
+        entry = new CachedStack(serialized);
+        synchronized (CACHE) {
+            CACHE.put(serialized, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes every cached item stack.
+     */
+    public static void invalidate() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * Gets how many lookups were answered from the cache.
+     * @return the hit count
+     */
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    /**
+     * Gets how many lookups had to parse their string.
+     * @return the miss count
+     */
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    /**
+     * Gets the amount of cached item strings.
+     * @return the cache size
+     */
+    public static int size() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    /**
+     * A parsed item string. Invalid strings are cached too, so their error is only logged once.
+     */
+    private static class CachedStack {
+        @Nullable
+        private final NBTTagCompound tag;
+        @Nullable
+        private final ItemStack stack;
+
+        private CachedStack(String serialized) {
+            NBTTagCompound tag = null;
+            try {
+                tag = JsonToNBT.getTagFromJson(serialized);
+            } catch (NBTException e) {
+                Configurator.LOGGER.error(e);
+            }
+            this.tag = tag;
+            // the stack gets its own copy, as it keeps a reference to the "tag" compound
+            this.stack = tag != null ? new ItemStack(tag.copy()) : null;
+        }
+    }
+}
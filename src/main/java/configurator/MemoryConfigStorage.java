@@ -0,0 +1,158 @@
+package configurator;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A {@link ConfigStorage} that keeps config files in memory and never touches the disk.
+ * </p>
+ * A written file only becomes visible when its writer is closed, so readers see either the old or the whole new file.
+ * Every change gets a later modification time than the one before, so reloads notice it even within the same millisecond.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class MemoryConfigStorage implements ConfigStorage {
+    private final Map<Path, Stored> files = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    private static Path key(File file) {
+        return file.toPath().normalize();
+    }
+
+    /**
+     * Puts a file into this storage, replacing the file if it exists. Its folders are created as well.
+     * @param file the file
+     * @param content the content of the file
+     */
+    public void put(File file, String content) {
+        makeFolder(file.getParentFile() != null ? file.getParentFile() : new File(""));
+        files.put(key(file), new Stored(content.getBytes(StandardCharsets.UTF_8), false, tick()));
+    }
+
+    /**
+     * Gets the content of a file.
+     * @param file the file
+     * @return the content, or null if the file does not exist or is a folder
+     */
+    @Nullable
+    public String getContent(File file) {
+        Stored stored = files.get(key(file));
+        return stored != null && !stored.directory ? new String(stored.content, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Deletes every file and folder.
+     */
+    public void clear() {
+        files.clear();
+    }
+
+    @Override
+    @Nullable
+    public ConfigFileIndex.Entry get(File file) {
+        Stored stored = files.get(key(file));
+        return stored != null ? stored.entry : null;
+    }
+
+    @Override
+    public Reader newReader(File file) throws IOException {
+        Stored stored = files.get(key(file));
+        if (stored == null || stored.directory) throw new FileNotFoundException(file.getPath());
+        return new InputStreamReader(new ByteArrayInputStream(stored.content), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Writer newWriter(File file) throws IOException {
+        Path path = key(file);
+        if (files.containsKey(path)) throw new FileAlreadyExistsException(file.getPath());
+        if (path.getParent() != null && !isDirectory(path.getParent().toFile())) throw new FileNotFoundException(file.getPath());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        return new OutputStreamWriter(content, StandardCharsets.UTF_8) {
+            private boolean closed = false;
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                if (closed) return;
+                closed = true;
+                if (files.putIfAbsent(path, new Stored(content.toByteArray(), false, tick())) != null) throw new FileAlreadyExistsException(file.getPath());
+            }
+        };
+    }
+
+    @Override
+    public void replace(File file, Content content) throws IOException {
+        Path path = key(file);
+        Stored old = files.get(path);
+        if (old != null && old.directory) throw new FileAlreadyExistsException(file.getPath());
+        if (path.getParent() != null && !isDirectory(path.getParent().toFile())) throw new FileNotFoundException(file.getPath());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            content.write(writer);
+        }
+        files.put(path, new Stored(bytes.toByteArray(), false, tick()));
+    }
+
+    @Override
+    public boolean delete(File file) {
+        Path path = key(file);
+        for (Path other : files.keySet()) if (!other.equals(path) && other.startsWith(path)) return false;
+        return files.remove(path) != null;
+    }
+
+    @Override
+    public boolean makeFolder(File dir) {
+        for (Path path = key(dir); path != null && !path.toString().isEmpty(); path = path.getParent()) {
+            Stored stored = files.get(path);
+            if (stored != null) {
+                if (!stored.directory) return false;
+                break;
+            }
+            files.putIfAbsent(path, new Stored(new byte[0], true, tick()));
+        }
+        return true;
+    }
+
+    @Override
+    public void refresh(File file) {}
+
+    @Override
+    @Nullable
+    public Path getPath(File file) {
+        return null;
+    }
+
+    private long tick() {
+        return clock.updateAndGet(time -> Math.max(time + 1, System.currentTimeMillis()));
+    }
+
+    private static class Stored {
+        protected final byte[] content;
+        protected final boolean directory;
+        protected final ConfigFileIndex.Entry entry;
+
+        protected Stored(byte[] content, boolean directory, long lastModified) {
+            this.content = content;
+            this.directory = directory;
+            this.entry = new ConfigFileIndex.Entry(content.length, lastModified, directory);
+        }
+    }
+}
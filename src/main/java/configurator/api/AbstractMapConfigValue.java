@@ -0,0 +1,96 @@
+package configurator.api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import configurator.ConfigProfiler;
+import configurator.Configurator;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * stores a map as a json object, and keeps a frozen copy of it built once whenever the json is set.
+ * </p>
+ * entries that the codecs can not read are reported and left out of the frozen copy.
+ * @param <K> the key type
+ * @param <V> the value type
+ * @param <M> the frozen map type
+ */
+public abstract class AbstractMapConfigValue<K, V, M> extends JsonConfigValue {
+    protected final ConfigCodec<K> keyCodec;
+    protected final ConfigCodec<V> valueCodec;
+    protected volatile M map;
+
+    public AbstractMapConfigValue(String name, ConfigCodec<K> keyCodec, ConfigCodec<V> valueCodec, ConfigCategory parentCategory) {
+        super(name, parentCategory);
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+    }
+
+    @Override
+    public void set(@Nullable JsonObject value) {
+        super.set(value);
+        this.map = freeze(value != null ? decode(value) : Collections.emptyMap());
+    }
+
+    /**
+     * Gets the frozen map of the current value.
+     * @return the frozen map
+     */
+    public M getMap() {
+        ensureLoaded();
+        if (ConfigProfiler.isEnabled()) reads.increment();
+        M map = this.map;
+        if (lazyLoader != null) {
+            ensureLoaded();
+            map = this.map;
+        }
+        return map;
+    }
+
+    /**
+     * converts a map to the json stored by this value.
+     * @param map the map to convert
+     * @return the json object
+     */
+    public JsonObject serialize(Map<K, V> map) {
+        JsonObject json = new JsonObject();
+        for (Map.Entry<K, V> entry : map.entrySet()) json.add(keyCodec.writeKey(entry.getKey()), valueCodec.write(entry.getValue()));
+        return json;
+    }
+
+    protected Map<K, V> decode(JsonObject json) {
+        Map<K, V> decoded = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+            try {
+                decoded.put(keyCodec.readKey(entry.getKey()), valueCodec.read(entry.getValue()));
+            } catch (RuntimeException e) {
+                Configurator.LOGGER.warn("Ignoring invalid entry {} of config value {}: {}", entry.getKey(), name, entry.getValue());
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * builds the frozen map from the decoded entries.
+     * @param decoded the decoded entries
+     * @return the frozen map
+     */
+    protected abstract M freeze(Map<K, V> decoded);
+
+    @Override
+    protected Object captureState() {
+        return new Object[] {super.captureState(), map};
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void restoreState(@Nullable Object state) {
+        Object[] values = (Object[])state;
+        super.restoreState(values[0]);
+        this.map = (M)values[1];
+    }
+}
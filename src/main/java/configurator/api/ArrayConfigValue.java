@@ -4,15 +4,161 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import configurator.ConfigProfiler;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
+/**
+ * <p>
+ * config value that stores a json array.
+ * </p>
+ * values set to compact only keep a read-only {@link CompactJsonArray} instead of the gson tree, see {@link ArrayConfigValue#setCompact(boolean)}.
+ */
 public class ArrayConfigValue extends ConfigValue<JsonArray> {
+    protected volatile boolean compact = false;
+    @Nullable
+    protected volatile CompactJsonArray compactValue;
+    /** the default value of values stored in compact form, which keep no gson tree for it either */
+    @Nullable
+    protected CompactJsonArray compactDefault;
+
     public ArrayConfigValue(String name, ConfigCategory parentCategory) {
         super(name, parentCategory);
     }
 
+    /**
+     * <p>
+     * stores this value as a {@link CompactJsonArray} from now on, and drops the gson tree.
+     * </p>
+     * {@link ArrayConfigValue#get()} then builds a new gson copy on every call, the list getters and {@link ArrayConfigValue#getCompact()} do not.
+     * @param compact if this value is stored in compact form
+     */
+    public void setCompact(boolean compact) {
+        JsonArray current = peek();
+        JsonArray currentDefault = getDefault();
+        this.compact = compact;
+        this.value = compact ? null : current;
+        this.compactValue = compact && current != null ? CompactJsonArray.of(current) : null;
+        this.defaultValue = compact ? null : currentDefault;
+        this.compactDefault = compact && currentDefault != null ? CompactJsonArray.of(currentDefault) : null;
+    }
+
+    @Override
+    public void markDefault() {
+        if (!compact) {
+            super.markDefault();
+            return;
+        }
+        this.compactDefault = compactValue;
+        this.layer = ConfigLayer.DEFAULT;
+    }
+
+    /**
+     * gets the default value. values stored in compact form return a new copy on every call.
+     * @return the default value
+     */
+    @Override
+    @Nullable
+    public JsonArray getDefault() {
+        if (!compact) return super.getDefault();
+        CompactJsonArray compactDefault = this.compactDefault;
+        return compactDefault != null ? compactDefault.toJson() : null;
+    }
+
+    /**
+     * @return if this value is stored in compact form
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    @Override
+    public void set(@Nullable JsonArray value) {
+        if (!compact) {
+            super.set(value);
+            return;
+        }
+        CompactJsonArray compactValue = value != null ? CompactJsonArray.of(value) : null;
+        if (!Objects.equals(this.compactValue, compactValue)) version++;
+        this.compactValue = compactValue;
+    }
+
+    /**
+     * gets the current value as a read-only compact array.
+     * values that are not stored in compact form are copied on every call.
+     * @return the compact array, or null if the value is null
+     */
+    @Nullable
+    public CompactJsonArray getCompact() {
+        ensureLoaded();
+        if (ConfigProfiler.isEnabled()) reads.increment();
+        CompactJsonArray compactValue = this.compactValue;
+        JsonArray value = this.value;
+        if (lazyLoader != null) {
+            ensureLoaded();
+            compactValue = this.compactValue;
+            value = this.value;
+        }
+        if (compact) return compactValue;
+        return value != null ? CompactJsonArray.of(value) : null;
+    }
+
+    /**
+     * gets the stored json array. values stored in compact form build a new gson copy of the whole tree on every call,
+     * which allocates as much as the value holds; read them with {@link #getCompact()} where they are read often.
+     * @return the json array
+     */
+    @Override
+    @Nullable
+    public JsonArray get() {
+        if (!compact) return super.get();
+        CompactJsonArray compactValue = getCompact();
+        return compactValue != null ? compactValue.toJson() : null;
+    }
+
+    @Override
+    @Nullable
+    protected JsonArray peek() {
+        if (!compact) return value;
+        CompactJsonArray compactValue = this.compactValue;
+        return compactValue != null ? compactValue.toJson() : null;
+    }
+
+    @Override
+    public void writeToJson(JsonObject json) {
+        if (!compact) super.writeToJson(json);
+        else if (compactValue != null) json.add(name, compactValue.toJson());
+    }
+
+    @Override
+    public void writeToJson(JsonWriter writer) throws IOException {
+        if (!compact || writesTree()) {
+            super.writeToJson(writer);
+            return;
+        }
+        CompactJsonArray compactValue = this.compactValue;
+        writer.name(name);
+        if (compactValue != null) compactValue.write(writer);
+        else writer.nullValue();
+    }
+
+    @Override
+    @Nullable
+    protected Object captureState() {
+        return compact ? compactValue : value;
+    }
+
+    @Override
+    protected void restoreState(@Nullable Object state) {
+        if (compact) this.compactValue = (CompactJsonArray)state;
+        else this.value = (JsonArray)state;
+    }
+
     public List<JsonElement> getJsonList() {
         List<JsonElement> list = new ArrayList<>();
         JsonArray array = get();
@@ -36,6 +182,10 @@ public class ArrayConfigValue extends ConfigValue<JsonArray> {
     }
 
     public <T extends Number> List<T> getNumberList() {
+        if (compact) {
+            CompactJsonArray compactValue = getCompact();
+            return compactValue != null ? compactValue.getNumberList() : new ArrayList<>();
+        }
         List<T> list = new ArrayList<>();
         JsonArray array = get();
         if (array != null) {
@@ -52,6 +202,10 @@ public class ArrayConfigValue extends ConfigValue<JsonArray> {
     }
 
     public List<String> getStringList() {
+        if (compact) {
+            CompactJsonArray compactValue = getCompact();
+            return compactValue != null ? new ArrayList<>(compactValue.getStringList()) : new ArrayList<>();
+        }
         List<String> list = new ArrayList<>();
         JsonArray array = get();
         if (array != null) {
@@ -68,6 +222,10 @@ public class ArrayConfigValue extends ConfigValue<JsonArray> {
     }
 
     public List<Boolean> getBooleanList() {
+        if (compact) {
+            CompactJsonArray compactValue = getCompact();
+            return compactValue != null ? compactValue.getBooleanList() : new ArrayList<>();
+        }
         List<Boolean> list = new ArrayList<>();
         JsonArray array = get();
         if (array != null) {
@@ -0,0 +1,123 @@
+package configurator.api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * conversion helpers shared by the compact json types.
+ * compact values are null, {@link Boolean}, {@link String}, {@link Integer}, {@link Long}, {@link Double},
+ * {@link CompactJson.Text} for numbers the others would write differently than they were read,
+ * {@link CompactJsonObject} and {@link CompactJsonArray}.
+ */
+final class CompactJson {
+    private CompactJson() {}
+
+    @Nullable
+    static Object compact(@Nullable JsonElement element) {
+        if (element == null || element.isJsonNull()) return null;
+        if (element.isJsonObject()) return CompactJsonObject.of(element.getAsJsonObject());
+        if (element.isJsonArray()) return CompactJsonArray.of(element.getAsJsonArray());
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isBoolean()) return primitive.getAsBoolean();
+        if (primitive.isNumber()) return compact(primitive.getAsNumber());
+        return primitive.getAsString();
+    }
+
+    /**
+     * stores a number as the smallest type that keeps its value, parsed numbers are only kept as text by gson.
+     * numbers the smaller type would write differently, such as 1e3, 0.10 or -0, keep their text so files are written back as they were read.
+     */
+    static Number compact(Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Double) return number;
+        String text = number.toString();
+        if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(text);
+                Number compact = value == (int)value ? Integer.valueOf((int)value) : Long.valueOf(value);
+                return compact.toString().equals(text) ? compact : new Text(text);
+            } catch (NumberFormatException e) {
+                return new Text(text);
+            }
+        }
+        try {
+            Double value = Double.valueOf(text);
+            return value.toString().equals(text) ? value : new Text(text);
+        } catch (NumberFormatException e) {
+            return new Text(text);
+        }
+    }
+
+    static JsonElement expand(@Nullable Object value) {
+        if (value == null) return JsonNull.INSTANCE;
+        if (value instanceof CompactJsonObject) return ((CompactJsonObject)value).toJson();
+        if (value instanceof CompactJsonArray) return ((CompactJsonArray)value).toJson();
+        if (value instanceof Boolean) return new JsonPrimitive((Boolean)value);
+        if (value instanceof Number) return new JsonPrimitive((Number)value);
+        return new JsonPrimitive((String)value);
+    }
+
+    static void write(@Nullable Object value, JsonWriter writer) throws IOException {
+        if (value == null) writer.nullValue();
+        else if (value instanceof CompactJsonObject) ((CompactJsonObject)value).write(writer);
+        else if (value instanceof CompactJsonArray) ((CompactJsonArray)value).write(writer);
+        else if (value instanceof Boolean) writer.value((Boolean)value);
+        else if (value instanceof Number) writer.value((Number)value);
+        else writer.value((String)value);
+    }
+
+    /**
+     * a number kept as the text it was read from, compared by its text.
+     */
+    static final class Text extends Number {
+        private final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int intValue() {
+            return toBigDecimal().intValue();
+        }
+
+        @Override
+        public long longValue() {
+            return toBigDecimal().longValue();
+        }
+
+        @Override
+        public float floatValue() {
+            return Float.parseFloat(text);
+        }
+
+        @Override
+        public double doubleValue() {
+            return Double.parseDouble(text);
+        }
+
+        private BigDecimal toBigDecimal() {
+            return new BigDecimal(text);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            return obj instanceof Text && ((Text)obj).text.equals(text);
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package configurator.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * an immutable copy of a json array that takes a fraction of the memory of the gson tree.
+ * </p><p>
+ * arrays holding only ints, longs, doubles, booleans or strings are flattened into a single primitive or string array,
+ * arrays mixing element types keep one compact value per element.
+ * </p>
+ * the list getters return the same elements as the ones of {@link ArrayConfigValue}.
+ */
+public final class CompactJsonArray {
+    private static final byte INT = 0, LONG = 1, DOUBLE = 2, BOOLEAN = 3, STRING = 4, MIXED = 5;
+    public static final CompactJsonArray EMPTY = new CompactJsonArray(MIXED, new Object[0], 0);
+
+    private final byte type;
+    private final Object data;
+    private final int size;
+
+    private CompactJsonArray(byte type, Object data, int size) {
+        this.type = type;
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * copies a json array into a compact array.
+     * @param json the json array to copy
+     * @return the compact array
+     */
+    public static CompactJsonArray of(JsonArray json) {
+        int size = json.size();
+        if (size == 0) return EMPTY;
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; i++) values[i] = CompactJson.compact(json.get(i));
+
+        byte type = typeOf(values[0]);
+        for (int i = 1; i < size && type != MIXED; i++) {
+            byte next = typeOf(values[i]);
+            if (next == type) continue;
+            if ((type == INT && next == LONG) || (type == LONG && next == INT)) type = LONG;
+            else type = MIXED;
+        }
+
+        switch (type) {
+            case INT:
+                int[] ints = new int[size];
+                for (int i = 0; i < size; i++) ints[i] = (Integer)values[i];
+                return new CompactJsonArray(type, ints, size);
+            case LONG:
+                long[] longs = new long[size];
+                for (int i = 0; i < size; i++) longs[i] = ((Number)values[i]).longValue();
+                return new CompactJsonArray(type, longs, size);
+            case DOUBLE:
+                double[] doubles = new double[size];
+                for (int i = 0; i < size; i++) doubles[i] = (Double)values[i];
+                return new CompactJsonArray(type, doubles, size);
+            case BOOLEAN:
+                boolean[] booleans = new boolean[size];
+                for (int i = 0; i < size; i++) booleans[i] = (Boolean)values[i];
+                return new CompactJsonArray(type, booleans, size);
+            case STRING:
+                return new CompactJsonArray(type, Arrays.copyOf(values, size, String[].class), size);
+            default:
+                return new CompactJsonArray(MIXED, values, size);
+        }
+    }
+
+    private static byte typeOf(@Nullable Object value) {
+        if (value instanceof Integer) return INT;
+        if (value instanceof Long) return LONG;
+        if (value instanceof Double) return DOUBLE;
+        if (value instanceof Boolean) return BOOLEAN;
+        if (value instanceof String) return STRING;
+        return MIXED;
+    }
+
+    /**
+     * gets an element as a compact value.
+     */
+    @Nullable
+    private Object value(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " of compact array of size " + size);
+        switch (type) {
+            case INT: return ((int[])data)[index];
+            case LONG: return ((long[])data)[index];
+            case DOUBLE: return ((double[])data)[index];
+            case BOOLEAN: return ((boolean[])data)[index];
+            case STRING: return ((String[])data)[index];
+            default: return ((Object[])data)[index];
+        }
+    }
+
+    /**
+     * @return the amount of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return if the array has no elements
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * gets an element converted back to gson, same as {@link JsonArray#get(int)}.
+     * @param index the index of the element
+     * @return a new json element
+     */
+    public JsonElement get(int index) {
+        return CompactJson.expand(value(index));
+    }
+
+    /**
+     * gets a string element.
+     * @param index the index of the element
+     * @return the string, or null if the element is not a string
+     */
+    @Nullable
+    public String getString(int index) {
+        if (type == STRING) return ((String[])data)[index];
+        Object value = value(index);
+        return value instanceof String ? (String)value : null;
+    }
+
+    /**
+     * gets a boolean element.
+     * @param index the index of the element
+     * @return the boolean, false if the element is not a boolean
+     */
+    public boolean getBoolean(int index) {
+        if (type == BOOLEAN) return ((boolean[])data)[index];
+        Object value = value(index);
+        return value instanceof Boolean && (Boolean)value;
+    }
+
+    /**
+     * gets a number element as an int.
+     * @param index the index of the element
+     * @return the int, 0 if the element is not a number
+     */
+    public int getInt(int index) {
+        if (type == INT) return ((int[])data)[index];
+        Object value = value(index);
+        return value instanceof Number ? ((Number)value).intValue() : 0;
+    }
+
+    /**
+     * gets a number element as a long.
+     * @param index the index of the element
+     * @return the long, 0 if the element is not a number
+     */
+    public long getLong(int index) {
+        if (type == LONG) return ((long[])data)[index];
+        Object value = value(index);
+        return value instanceof Number ? ((Number)value).longValue() : 0;
+    }
+
+    /**
+     * gets a number element as a double.
+     * @param index the index of the element
+     * @return the double, 0 if the element is not a number
+     */
+    public double getDouble(int index) {
+        if (type == DOUBLE) return ((double[])data)[index];
+        Object value = value(index);
+        return value instanceof Number ? ((Number)value).doubleValue() : 0;
+    }
+
+    /**
+     * gets an object element.
+     * @param index the index of the element
+     * @return the object, or null if the element is not an object
+     */
+    @Nullable
+    public CompactJsonObject getObject(int index) {
+        Object value = value(index);
+        return value instanceof CompactJsonObject ? (CompactJsonObject)value : null;
+    }
+
+    /**
+     * gets an array element.
+     * @param index the index of the element
+     * @return the array, or null if the element is not an array
+     */
+    @Nullable
+    public CompactJsonArray getArray(int index) {
+        Object value = value(index);
+        return value instanceof CompactJsonArray ? (CompactJsonArray)value : null;
+    }
+
+    /**
+     * @return the string elements, in order
+     */
+    public List<String> getStringList() {
+        if (type == STRING) return Collections.unmodifiableList(Arrays.asList((String[])data));
+        return filter(String.class);
+    }
+
+    /**
+     * @return the boolean elements, in order
+     */
+    public List<Boolean> getBooleanList() {
+        return filter(Boolean.class);
+    }
+
+    /**
+     * @param <T> the number type, ints are returned as {@link Integer}, and so on
+     * @return the number elements, in order
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Number> List<T> getNumberList() {
+        return (List<T>)filter(Number.class);
+    }
+
+    /**
+     * @return the object elements, in order
+     */
+    public List<CompactJsonObject> getObjectList() {
+        return filter(CompactJsonObject.class);
+    }
+
+    private <T> List<T> filter(Class<T> elementType) {
+        List<T> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Object value = value(i);
+            if (elementType.isInstance(value)) list.add(elementType.cast(value));
+        }
+        return list;
+    }
+
+    /**
+     * converts this array back to a new gson tree.
+     * @return the json array
+     */
+    public JsonArray toJson() {
+        JsonArray json = new JsonArray();
+        for (int i = 0; i < size; i++) json.add(CompactJson.expand(value(i)));
+        return json;
+    }
+
+    /**
+     * streams this array into a json writer without building a gson tree.
+     * @param writer the json writer
+     * @throws IOException if the writer fails
+     */
+    public void write(JsonWriter writer) throws IOException {
+        writer.beginArray();
+        for (int i = 0; i < size; i++) CompactJson.write(value(i), writer);
+        writer.endArray();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof CompactJsonArray)) return false;
+        CompactJsonArray other = (CompactJsonArray)obj;
+        if (type != other.type || size != other.size) return false;
+        switch (type) {
+            case INT: return Arrays.equals((int[])data, (int[])other.data);
+            case LONG: return Arrays.equals((long[])data, (long[])other.data);
+            case DOUBLE: return Arrays.equals((double[])data, (double[])other.data);
+            case BOOLEAN: return Arrays.equals((boolean[])data, (boolean[])other.data);
+            default: return Arrays.equals((Object[])data, (Object[])other.data);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        switch (type) {
+            case INT: return Arrays.hashCode((int[])data);
+            case LONG: return Arrays.hashCode((long[])data);
+            case DOUBLE: return Arrays.hashCode((double[])data);
+            case BOOLEAN: return Arrays.hashCode((boolean[])data);
+            default: return Arrays.hashCode((Object[])data);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringWriter string = new StringWriter();
+        try {
+            write(new JsonWriter(string));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return string.toString();
+    }
+}
@@ -0,0 +1,248 @@
+package configurator.api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * an immutable copy of a json object that takes a fraction of the memory of the gson tree.
+ * </p><p>
+ * keys are interned and kept in two flat arrays with the values, numbers are stored as primitives where the
+ * value allows it, and nested arrays are flattened, see {@link CompactJsonArray}. objects with more than a few keys
+ * get a small hash index, so lookups do not scan.
+ * </p>
+ * the entries keep the order of the json they were copied from.
+ */
+public final class CompactJsonObject {
+    private static final int INDEX_SIZE = 8;
+    public static final CompactJsonObject EMPTY = new CompactJsonObject(new String[0], new Object[0]);
+
+    private final String[] keys;
+    private final Object[] values;
+    @Nullable
+    private final Object[] table;
+    @Nullable
+    private final int[] slots;
+
+    private CompactJsonObject(String[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+        if (keys.length > INDEX_SIZE) {
+            this.table = new Object[FrozenTables.capacity(keys.length)];
+            this.slots = new int[table.length];
+            for (int i = 0; i < keys.length; i++) slots[FrozenTables.insert(table, keys[i])] = i;
+        } else {
+            this.table = null;
+            this.slots = null;
+        }
+    }
+
+    /**
+     * copies a json object into a compact object.
+     * @param json the json object to copy
+     * @return the compact object
+     */
+    public static CompactJsonObject of(JsonObject json) {
+        int size = json.size();
+        if (size == 0) return EMPTY;
+        String[] keys = new String[size];
+        Object[] values = new Object[size];
+        int i = 0;
+        for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+            keys[i] = entry.getKey().intern();
+            values[i++] = CompactJson.compact(entry.getValue());
+        }
+        return new CompactJsonObject(keys, values);
+    }
+
+    private int indexOf(String key) {
+        if (table != null) {
+            int slot = FrozenTables.find(table, key);
+            return slot >= 0 ? slots[slot] : -1;
+        }
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] == key || keys[i].equals(key)) return i;
+        return -1;
+    }
+
+    @Nullable
+    private Object value(String key) {
+        int i = indexOf(key);
+        return i >= 0 ? values[i] : null;
+    }
+
+    /**
+     * @return the amount of entries
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return if the object has no entries
+     */
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * checks if the object has a key.
+     * @param key the key
+     * @return if the object has the key, even if its value is null
+     */
+    public boolean has(String key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return the keys of the object, in order
+     */
+    public List<String> keys() {
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    /**
+     * gets a value converted back to gson, same as {@link JsonObject#get(String)}.
+     * @param key the key
+     * @return a new json element, or null if the object does not have the key
+     */
+    @Nullable
+    public JsonElement get(String key) {
+        int i = indexOf(key);
+        return i >= 0 ? CompactJson.expand(values[i]) : null;
+    }
+
+    /**
+     * gets a string value.
+     * @param key the key
+     * @return the string, or null if the key is missing or not a string
+     */
+    @Nullable
+    public String getString(String key) {
+        Object value = value(key);
+        return value instanceof String ? (String)value : null;
+    }
+
+    /**
+     * gets a boolean value.
+     * @param key the key
+     * @param defaultValue the value returned if the key is missing or not a boolean
+     * @return the boolean
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = value(key);
+        return value instanceof Boolean ? (Boolean)value : defaultValue;
+    }
+
+    /**
+     * gets a number value as an int.
+     * @param key the key
+     * @param defaultValue the value returned if the key is missing or not a number
+     * @return the int
+     */
+    public int getInt(String key, int defaultValue) {
+        Object value = value(key);
+        return value instanceof Number ? ((Number)value).intValue() : defaultValue;
+    }
+
+    /**
+     * gets a number value as a long.
+     * @param key the key
+     * @param defaultValue the value returned if the key is missing or not a number
+     * @return the long
+     */
+    public long getLong(String key, long defaultValue) {
+        Object value = value(key);
+        return value instanceof Number ? ((Number)value).longValue() : defaultValue;
+    }
+
+    /**
+     * gets a number value as a double.
+     * @param key the key
+     * @param defaultValue the value returned if the key is missing or not a number
+     * @return the double
+     */
+    public double getDouble(String key, double defaultValue) {
+        Object value = value(key);
+        return value instanceof Number ? ((Number)value).doubleValue() : defaultValue;
+    }
+
+    /**
+     * gets a nested object.
+     * @param key the key
+     * @return the object, or null if the key is missing or not an object
+     */
+    @Nullable
+    public CompactJsonObject getObject(String key) {
+        Object value = value(key);
+        return value instanceof CompactJsonObject ? (CompactJsonObject)value : null;
+    }
+
+    /**
+     * gets a nested array.
+     * @param key the key
+     * @return the array, or null if the key is missing or not an array
+     */
+    @Nullable
+    public CompactJsonArray getArray(String key) {
+        Object value = value(key);
+        return value instanceof CompactJsonArray ? (CompactJsonArray)value : null;
+    }
+
+    /**
+     * converts this object back to a new gson tree.
+     * @return the json object
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        for (int i = 0; i < keys.length; i++) json.add(keys[i], CompactJson.expand(values[i]));
+        return json;
+    }
+
+    /**
+     * streams this object into a json writer without building a gson tree.
+     * @param writer the json writer
+     * @throws IOException if the writer fails
+     */
+    public void write(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        for (int i = 0; i < keys.length; i++) {
+            writer.name(keys[i]);
+            CompactJson.write(values[i], writer);
+        }
+        writer.endObject();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof CompactJsonObject)) return false;
+        CompactJsonObject other = (CompactJsonObject)obj;
+        return Arrays.equals(keys, other.keys) && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(keys) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        StringWriter string = new StringWriter();
+        try {
+            write(new JsonWriter(string));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return string.toString();
+    }
+}
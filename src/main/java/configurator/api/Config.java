@@ -1,28 +1,152 @@
 package configurator.api;
 
 import com.google.gson.JsonObject;
+import configurator.ConfigPlayers;
+import configurator.ConfigStorage;
+import configurator.ConfigWriter;
 import configurator.Configurator;
+import net.minecraft.block.Block;
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.potion.Potion;
 import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.biome.Biome;
+import net.minecraftforge.fml.common.registry.EntityEntry;
+import net.minecraftforge.registries.IForgeRegistryEntry;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 public class Config {
     public final String name;
     public final String folder;
     public final Type type;
     public final List<ConfigCategory> categories;
-    protected boolean loaded = false;
+    protected final List<ConfigValue<?>> values = new ArrayList<>();
+    protected final List<DerivedConfigValue<?>> derived = new ArrayList<>();
+    protected final List<ConfigConstraint<?>> constraints = new ArrayList<>();
+    protected final List<ConfigValue<?>> playerValues = new ArrayList<>();
+    protected final List<ConfigEdit.Listener> editListeners = new CopyOnWriteArrayList<>();
+    protected volatile boolean loaded = false;
+    protected volatile boolean lazy = false;
+    protected String remoteUrl;
+    protected String remoteSha256;
+    protected ConfigStorage storage;
+    protected boolean sharded = false;
+    protected boolean lazyShards = false;
+    protected final Set<ConfigCategory> loadedShards = ConcurrentHashMap.newKeySet();
+    /** set while new values are published with {@link Config#publish(Runnable)} */
+    protected volatile boolean publishing = false;
+    /** put in front of reads of every value while new values are published */
+    protected final Runnable awaiter = this::awaitPublished;
 
     protected Config(String folder, String name, Type type, List<ConfigCategory> categories) {
         this.folder = folder;
         this.name = name;
         this.type = type;
         this.categories = categories;
+        forEachValue(values::add);
+        forEachValue(ConfigValue::markDefault);
+        for (ConfigValue<?> value : values) value.config = this;
+    }
+
+    /**
+     * <p>
+     * Sets new values in one step for readers that do not lock the config.
+     * </p><p>
+     * Reads of values of this config from other threads wait until the action is done, so a reader never sees one of the
+     * new values and then an old one. Keep the action short, it blocks every reader of this config.
+     * </p><p>
+     * Reads check for this through the same field as the lazy loaders of the values, which is empty outside of loads and
+     * publishing, so reads of a loaded config check a single field.
+     * </p>
+     * This method is for internal use, it is called with the config locked.
+     * @param action sets the new values
+     */
+    public void publish(Runnable action) {
+        if (!Thread.holdsLock(this)) throw new IllegalStateException(String.format("Config %s must be locked to publish values", name));
+        if (publishing) {
+            action.run();
+            return;
+        }
+        publishing = true;
+        for (ConfigValue<?> value : values) value.hold(awaiter);
+        for (DerivedConfigValue<?> value : derived) value.hold(awaiter);
+        try {
+            action.run();
+        } finally {
+            publishing = false;
+            for (ConfigValue<?> value : values) value.release(awaiter);
+            for (DerivedConfigValue<?> value : derived) value.release(awaiter);
+        }
+    }
+
+    /**
+     * Waits until the values that are being published are set, called by reads of values of this config while it publishes.
+     */
+    public void awaitPublished() {
+        if (!publishing || Thread.holdsLock(this)) return;
+        synchronized (this) {
+            // the publishing thread holds the config lock until every new value is set, taking it is enough
+        }
+    }
+
+    /**
+     * Gets every {@link ConfigValue} in this config, including the ones in sub categories.
+     * @return the values of this config
+     */
+    public List<ConfigValue<?>> getValues() {
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Starts a batch of changes to the values of this config, see {@link ConfigEdit}.
+     * @return the new edit
+     */
+    public ConfigEdit edit() {
+        return new ConfigEdit(this);
+    }
+
+    /**
+     * Adds a listener that is called once after every committed {@link ConfigEdit} of this config.
+     * @param listener the listener
+     */
+    public void addEditListener(ConfigEdit.Listener listener) {
+        editListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link Config#addEditListener(ConfigEdit.Listener)}.
+     * @param listener the listener
+     */
+    public void removeEditListener(ConfigEdit.Listener listener) {
+        editListeners.remove(listener);
+    }
+
+    protected void notifyEdit(List<ConfigValue<?>> changed) {
+        List<ConfigValue<?>> values = Collections.unmodifiableList(changed);
+        for (ConfigEdit.Listener listener : editListeners) {
+            try {
+                listener.onEdit(this, values);
+            } catch (RuntimeException e) {
+                Configurator.LOGGER.error("Edit listener of config {} failed", name);
+                Configurator.LOGGER.error(e);
+            }
+        }
     }
 
     public boolean isLoaded() {
@@ -31,6 +155,180 @@ public class Config {
 
     public void loaded() {
         this.loaded = true;
+        for (ConfigCategory category : categories)
+            if (!lazyShards || loadedShards.contains(category)) forEachValue(category, value -> value.setLazyLoader(null));
+        if (!lazyShards || loadedShards.size() == categories.size()) {
+            for (DerivedConfigValue<?> value : derived) value.setLazyLoader(null);
+        }
+    }
+
+    /**
+     * Checks if this config is loaded on the first read of one of its values instead of on mod construction.
+     * @return if this config was registered lazily
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * <p>
+     * Binds this config so that the given loader is run the first time one of its values is read.
+     * </p>
+     * This method is for internal use.
+     * @param loader the loader of this config
+     */
+    public void bindLazy(Runnable loader) {
+        this.lazy = true;
+        if (loaded) return;
+        forEachValue(value -> value.setLazyLoader(loader));
+        for (DerivedConfigValue<?> value : derived) value.setLazyLoader(loader);
+    }
+
+    /**
+     * Checks if every top-level category of this config is stored in its own file.
+     * @return if this config is sharded
+     */
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    /**
+     * Checks if the shards of this config are loaded on the first read of one of their values.
+     * @return if this config has lazy shards
+     */
+    public boolean hasLazyShards() {
+        return lazyShards;
+    }
+
+    /**
+     * Checks if a shard of this config was loaded.
+     * @param category the top-level category of the shard
+     * @return if the shard is loaded
+     */
+    public boolean isShardLoaded(ConfigCategory category) {
+        return loadedShards.contains(category);
+    }
+
+    /**
+     * <p>
+     * Binds a shard of this config so that the given loader is run the first time one of its values is read.
+     * </p>
+     * This method is for internal use.
+     * @param category the top-level category of the shard
+     * @param loader the loader of the shard
+     */
+    public void bindShard(ConfigCategory category, Runnable loader) {
+        if (!loadedShards.contains(category)) forEachValue(category, value -> value.setLazyLoader(loader));
+    }
+
+    /**
+     * <p>
+     * Marks a shard of this config as loaded.
+     * </p>
+     * This method is for internal use.
+     * @param category the top-level category of the shard
+     */
+    public void shardLoaded(ConfigCategory category) {
+        loadedShards.add(category);
+        if (loaded) forEachValue(category, value -> value.setLazyLoader(null));
+        if (loaded && loadedShards.size() == categories.size()) {
+            for (DerivedConfigValue<?> value : derived) value.setLazyLoader(null);
+        }
+    }
+
+    /**
+     * Gets every {@link ConfigConstraint} of this config.
+     * @return the constraints of this config
+     */
+    public List<ConfigConstraint<?>> getConstraints() {
+        return Collections.unmodifiableList(constraints);
+    }
+
+    /**
+     * <p>
+     * Checks every constrained value and fixes the invalid ones according to their policy.
+     * </p>
+     * This method is for internal use, it is called with the config locked after the values were loaded or reloaded.
+     * @param shard the top-level category to check, or null to check the whole config
+     * @return a description of every fixed value
+     */
+    public List<String> applyConstraints(@Nullable ConfigCategory shard) {
+        if (constraints.isEmpty()) return Collections.emptyList();
+        List<String> problems = new ArrayList<>();
+        for (ConfigConstraint<?> constraint : constraints) {
+            if (shard != null && constraint.getTopCategory() != shard) continue;
+            String problem = constraint.apply();
+            if (problem != null) problems.add(problem);
+        }
+        return problems;
+    }
+
+    /**
+     * Gets every value of this config that players can override, see {@link ConfigPlayers}.
+     * @return the per-player values of this config
+     */
+    public List<ConfigValue<?>> getPlayerValues() {
+        return Collections.unmodifiableList(playerValues);
+    }
+
+    /**
+     * Gets every {@link DerivedConfigValue} of this config, in the order they are updated.
+     * @return the derived values of this config
+     */
+    public List<DerivedConfigValue<?>> getDerivedValues() {
+        return Collections.unmodifiableList(derived);
+    }
+
+    /**
+     * <p>
+     * Computes every derived value whose inputs changed again, in dependency order.
+     * </p>
+     * This method is for internal use, it is called with the config locked after the values were loaded or reloaded.
+     * @return the amount of values that were computed again
+     */
+    public int updateDerived() {
+        int updated = 0;
+        for (DerivedConfigValue<?> value : derived) if (value.update()) updated++;
+        return updated;
+    }
+
+    /**
+     * Gets the url this config is downloaded from.
+     * @return the remote url, or null if this config is only read from disk
+     */
+    @Nullable
+    public String getRemoteUrl() {
+        return remoteUrl;
+    }
+
+    /**
+     * Gets the pinned SHA-256 of the remote copy of this config.
+     * @return the SHA-256 in hex, or null if only the digest headers of the server are checked
+     */
+    @Nullable
+    public String getRemoteSha256() {
+        return remoteSha256;
+    }
+
+    /**
+     * Gets the storage the files of this config are kept in.
+     * @return the storage of this config, or the default storage if it has none of its own
+     */
+    public ConfigStorage getStorage() {
+        return storage != null ? storage : ConfigWriter.getStorage();
+    }
+
+    /**
+     * Runs the given action on every {@link ConfigValue} in this config, including the ones in sub categories.
+     * @param action the action to run
+     */
+    public void forEachValue(Consumer<ConfigValue<?>> action) {
+        for (ConfigCategory category : categories) forEachValue(category, action);
+    }
+
+    private static void forEachValue(ConfigCategory category, Consumer<ConfigValue<?>> action) {
+        for (ConfigValue<?> value : category.getValues()) action.accept(value);
+        for (ConfigCategory subCategory : category.getSubCategories()) forEachValue(subCategory, action);
     }
 
     public static class Builder {
@@ -39,6 +337,16 @@ public class Config {
         protected Type type;
         protected final List<ConfigCategory> categories = new ArrayList<>();
         protected ConfigCategory currentEdit;
+        protected final List<DerivedConfigValue<?>> derived = new ArrayList<>();
+        protected final List<Supplier<ConfigConstraint<?>>> constraints = new ArrayList<>();
+        protected final List<ConfigValue<?>> playerValues = new ArrayList<>();
+        protected ConstraintPolicy policy = ConstraintPolicy.CLAMP;
+        protected String remoteUrl;
+        protected String remoteSha256;
+        protected ConfigStorage storage;
+        protected boolean compactJson = false;
+        protected boolean sharded = false;
+        protected boolean lazyShards = false;
 
         protected Builder() {}
 
@@ -96,6 +404,74 @@ public class Config {
             return this;
         }
 
+        /**
+         * <p>
+         * stores every top-level category of this config in its own file, inside a folder named after the config.
+         * </p>
+         * each file is loaded, validated, reloaded and written on its own. sharded configs can not be remote.
+         * @return this builder
+         */
+        public Builder sharded() {
+            return sharded(false);
+        }
+
+        /**
+         * stores every top-level category of this config in its own file, inside a folder named after the config.
+         * @param lazy if a file should only be loaded the first time one of its values is read. ignored for world configs
+         * @return this builder
+         */
+        public Builder sharded(boolean lazy) {
+            this.sharded = true;
+            this.lazyShards = lazy;
+            return this;
+        }
+
+        /**
+         * <p>
+         * downloads this config from the given url before it is loaded, replacing the local file.
+         * </p>
+         * the local file is kept if the server can not be reached.
+         * @param url the http url of the config json
+         * @return this builder
+         */
+        public Builder withRemote(String url) {
+            return withRemote(url, null);
+        }
+
+        /**
+         * downloads this config from the given url before it is loaded, and only applies downloads with the given SHA-256.
+         * @param url the http url of the config json
+         * @param sha256 the SHA-256 of the config json in hex, or null to only check the digest headers of the server
+         * @return this builder
+         */
+        public Builder withRemote(String url, @Nullable String sha256) {
+            this.remoteUrl = url;
+            this.remoteSha256 = sha256;
+            return this;
+        }
+
+        /**
+         * keeps the files of this config in the given storage instead of the default one.
+         * @param storage the storage, for example a {@link configurator.MemoryConfigStorage} or a {@link configurator.FileConfigStorage} with another root
+         * @return this builder
+         */
+        public Builder withStorage(ConfigStorage storage) {
+            this.storage = storage;
+            return this;
+        }
+
+        /**
+         * <p>
+         * stores every json and array value of this config in compact read-only form, see {@link JsonConfigValue#setCompact(boolean)}.
+         * </p>
+         * useful for configs with large json values that are read through the compact or list getters.
+         * @return this builder
+         */
+        public Builder compactJson() {
+            this.compactJson = true;
+            return this;
+        }
+
         /**
          * creates a new category inside the current one and sets the builder to edit it.
          * @param name the name of the category
@@ -304,6 +680,119 @@ public class Config {
             return value;
         }
 
+        /**
+         * defines a registry entry value in the current category, stored as its registry name.
+         * @param name the name of the value
+         * @param registryType the type of the registry, e.g. Item.class
+         * @param defaultValue the registry name that is set on file generation
+         * @param <V> the registry type
+         * @return the created ConfigValue
+         */
+        public <V extends IForgeRegistryEntry<V>> RegistryEntryConfigValue<V> defineRegistryEntry(String name, Class<V> registryType, ResourceLocation defaultValue) {
+            checkCurrentEdit();
+            RegistryEntryConfigValue<V> value = new RegistryEntryConfigValue<>(name, registryType, currentEdit);
+            currentEdit.addValue(value);
+            value.set(value.serialize(defaultValue));
+            return value;
+        }
+
+        /**
+         * defines an item value in the current category, stored as its registry name.
+         * @param name the name of the value
+         * @param defaultValue the registry name that is set on file generation
+         * @return the created ConfigValue
+         */
+        public RegistryEntryConfigValue<Item> defineItem(String name, ResourceLocation defaultValue) {
+            return defineRegistryEntry(name, Item.class, defaultValue);
+        }
+
+        /**
+         * defines a block value in the current category, stored as its registry name.
+         * @param name the name of the value
+         * @param defaultValue the registry name that is set on file generation
+         * @return the created ConfigValue
+         */
+        public RegistryEntryConfigValue<Block> defineBlock(String name, ResourceLocation defaultValue) {
+            return defineRegistryEntry(name, Block.class, defaultValue);
+        }
+
+        /**
+         * defines an entity value in the current category, stored as its registry name.
+         * @param name the name of the value
+         * @param defaultValue the registry name that is set on file generation
+         * @return the created ConfigValue
+         */
+        public RegistryEntryConfigValue<EntityEntry> defineEntity(String name, ResourceLocation defaultValue) {
+            return defineRegistryEntry(name, EntityEntry.class, defaultValue);
+        }
+
+        /**
+         * defines a biome value in the current category, stored as its registry name.
+         * @param name the name of the value
+         * @param defaultValue the registry name that is set on file generation
+         * @return the created ConfigValue
+         */
+        public RegistryEntryConfigValue<Biome> defineBiome(String name, ResourceLocation defaultValue) {
+            return defineRegistryEntry(name, Biome.class, defaultValue);
+        }
+
+        /**
+         * defines a potion effect value in the current category, stored as its registry name.
+         * @param name the name of the value
+         * @param defaultValue the registry name that is set on file generation
+         * @return the created ConfigValue
+         */
+        public RegistryEntryConfigValue<Potion> definePotion(String name, ResourceLocation defaultValue) {
+            return defineRegistryEntry(name, Potion.class, defaultValue);
+        }
+
+        /**
+         * defines an enchantment value in the current category, stored as its registry name.
+         * @param name the name of the value
+         * @param defaultValue the registry name that is set on file generation
+         * @return the created ConfigValue
+         */
+        public RegistryEntryConfigValue<Enchantment> defineEnchantment(String name, ResourceLocation defaultValue) {
+            return defineRegistryEntry(name, Enchantment.class, defaultValue);
+        }
+
+        /**
+         * defines a set of registry entries in the current category, stored as a list of registry names.
+         * a modid:* name matches every entry of that mod.
+         * @param name the name of the value
+         * @param registryType the type of the registry, e.g. Block.class
+         * @param defaultValue the registry names that are set on file generation
+         * @param <V> the registry type
+         * @return the created ConfigValue
+         */
+        public <V extends IForgeRegistryEntry<V>> RegistrySetConfigValue<V> defineRegistrySet(String name, Class<V> registryType, List<String> defaultValue) {
+            checkCurrentEdit();
+            RegistrySetConfigValue<V> value = new RegistrySetConfigValue<>(name, registryType, currentEdit);
+            currentEdit.addValue(value);
+            value.set(ArrayConfigValue.convertListToJson(defaultValue));
+            return value;
+        }
+
+        /**
+         * defines a set of items in the current category, stored as a list of registry names.
+         * @param name the name of the value
+         * @param defaultValue the registry names that are set on file generation
+         * @return the created ConfigValue
+         */
+        public RegistrySetConfigValue<Item> defineItemSet(String name, List<String> defaultValue) {
+            return defineRegistrySet(name, Item.class, defaultValue);
+        }
+
+        /**
+         * defines a set of blocks in the current category, stored as a list of registry names.
+         * @param name the name of the value
+         * @param defaultValue the registry names that are set on file generation
+         * @return the created ConfigValue
+         */
+        public RegistrySetConfigValue<Block> defineBlockSet(String name, List<String> defaultValue) {
+            return defineRegistrySet(name, Block.class, defaultValue);
+        }
+
         /**
          * defines an item stack value in the current category.
          * @param name the name of the value
@@ -332,6 +821,206 @@ public class Config {
             return value;
         }
 
+        /**
+         * sets what the constrained values defined after this do with invalid values, the default is {@link ConstraintPolicy#CLAMP}.
+         * @param policy the policy
+         * @return this builder
+         */
+        public Builder onInvalid(ConstraintPolicy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * defines an int value in the current category that is kept between two bounds.
+         * @param name the name of the value
+         * @param defaultValue the default value that is set on file generation
+         * @param min the lowest valid value
+         * @param max the highest valid value
+         * @return the created ConfigValue
+         */
+        public IntegerConfigValue defineInRange(String name, int defaultValue, int min, int max) {
+            return constrain(define(name, defaultValue), (value, policy) -> ConfigConstraint.range(value, min, max, policy));
+        }
+
+        /**
+         * defines a long value in the current category that is kept between two bounds.
+         * @param name the name of the value
+         * @param defaultValue the default value that is set on file generation
+         * @param min the lowest valid value
+         * @param max the highest valid value
+         * @return the created ConfigValue
+         */
+        public LongConfigValue defineInRange(String name, long defaultValue, long min, long max) {
+            return constrain(define(name, defaultValue), (value, policy) -> ConfigConstraint.range(value, min, max, policy));
+        }
+
+        /**
+         * defines a float value in the current category that is kept between two bounds.
+         * @param name the name of the value
+         * @param defaultValue the default value that is set on file generation
+         * @param min the lowest valid value
+         * @param max the highest valid value
+         * @return the created ConfigValue
+         */
+        public FloatConfigValue defineInRange(String name, float defaultValue, float min, float max) {
+            return constrain(define(name, defaultValue), (value, policy) -> ConfigConstraint.range(value, min, max, policy));
+        }
+
+        /**
+         * defines a double value in the current category that is kept between two bounds.
+         * @param name the name of the value
+         * @param defaultValue the default value that is set on file generation
+         * @param min the lowest valid value
+         * @param max the highest valid value
+         * @return the created ConfigValue
+         */
+        public DoubleConfigValue defineInRange(String name, double defaultValue, double min, double max) {
+            return constrain(define(name, defaultValue), (value, policy) -> ConfigConstraint.range(value, min, max, policy));
+        }
+
+        /**
+         * defines a string value in the current category that has to match a regular expression.
+         * @param name the name of the value
+         * @param defaultValue the default value that is set on file generation
+         * @param regex the regular expression the whole string has to match, compiled on build
+         * @return the created ConfigValue
+         */
+        public StringConfigValue defineMatching(String name, String defaultValue, String regex) {
+            return constrain(define(name, defaultValue), (value, policy) -> ConfigConstraint.matching(value, Pattern.compile(regex), policy));
+        }
+
+        /**
+         * defines a string value in the current category that has to be one of the given strings.
+         * @param name the name of the value
+         * @param defaultValue the default value that is set on file generation
+         * @param allowed the allowed strings
+         * @return the created ConfigValue
+         */
+        public StringConfigValue defineInList(String name, String defaultValue, Collection<String> allowed) {
+            return constrain(define(name, defaultValue), (value, policy) -> ConfigConstraint.allowed(value, allowed, policy));
+        }
+
+        /**
+         * defines an array value in the current category whose size is kept between two bounds.
+         * @param name the name of the value
+         * @param defaultValue the default value that is set on file generation
+         * @param minSize the lowest valid size
+         * @param maxSize the highest valid size
+         * @return the created ConfigValue
+         */
+        public ArrayConfigValue defineList(String name, List<?> defaultValue, int minSize, int maxSize) {
+            return constrain(define(name, defaultValue), (value, policy) -> ConfigConstraint.size(value, minSize, maxSize, policy));
+        }
+
+        /**
+         * adds a constraint to a value defined in this builder. the constraint is created on build,
+         * with the policy set by {@link Builder#onInvalid(ConstraintPolicy)} at the time of this call.
+         * @param value the value to constrain
+         * @param constraint creates the constraint of the value from the value and the policy
+         * @param <T> the stored type
+         * @param <C> the value type
+         * @return the value
+         */
+        public <T, C extends ConfigValue<T>> C constrain(C value, BiFunction<C, ConstraintPolicy, ConfigConstraint<T>> constraint) {
+            ConstraintPolicy policy = this.policy;
+            constraints.add(() -> constraint.apply(value, policy));
+            return value;
+        }
+
+        /**
+         * lets every player override a value defined in this builder, read with {@link ConfigValue#getFor(java.util.UUID)}, see {@link ConfigPlayers}.
+         * only values storing booleans, numbers, strings or json can be overridden, and overrides have to pass the constraints of the value.
+         * @param value the value to scope per player
+         * @param <C> the value type
+         * @return the value
+         */
+        public <C extends ConfigValue<?>> C perPlayer(C value) {
+            playerValues.add(value);
+            return value;
+        }
+
+        /**
+         * defines a map value in the current category.
+         * @param name the name of the value
+         * @param keyCodec the codec of the keys, see {@link ConfigCodecs}
+         * @param valueCodec the codec of the values, see {@link ConfigCodecs}
+         * @param defaultValue the default value that is set on file generation
+         * @param <K> the key type
+         * @param <V> the value type
+         * @return the created ConfigValue
+         */
+        public <K, V> MapConfigValue<K, V> defineMap(String name, ConfigCodec<K> keyCodec, ConfigCodec<V> valueCodec, Map<K, V> defaultValue) {
+            checkCurrentEdit();
+            MapConfigValue<K, V> value = new MapConfigValue<>(name, keyCodec, valueCodec, currentEdit);
+            currentEdit.addValue(value);
+            value.set(value.serialize(defaultValue));
+            return value;
+        }
+
+        /**
+         * defines a map of int values in the current category.
+         * @param name the name of the value
+         * @param keyCodec the codec of the keys, see {@link ConfigCodecs}
+         * @param defaultValue the default value that is set on file generation
+         * @param <K> the key type
+         * @return the created ConfigValue
+         */
+        public <K> IntMapConfigValue<K> defineIntMap(String name, ConfigCodec<K> keyCodec, Map<K, Integer> defaultValue) {
+            checkCurrentEdit();
+            IntMapConfigValue<K> value = new IntMapConfigValue<>(name, keyCodec, currentEdit);
+            currentEdit.addValue(value);
+            value.set(value.serialize(defaultValue));
+            return value;
+        }
+
+        /**
+         * defines a map of double values in the current category.
+         * @param name the name of the value
+         * @param keyCodec the codec of the keys, see {@link ConfigCodecs}
+         * @param defaultValue the default value that is set on file generation
+         * @param <K> the key type
+         * @return the created ConfigValue
+         */
+        public <K> DoubleMapConfigValue<K> defineDoubleMap(String name, ConfigCodec<K> keyCodec, Map<K, Double> defaultValue) {
+            checkCurrentEdit();
+            DoubleMapConfigValue<K> value = new DoubleMapConfigValue<>(name, keyCodec, currentEdit);
+            currentEdit.addValue(value);
+            value.set(value.serialize(defaultValue));
+            return value;
+        }
+
+        /**
+         * <p>
+         * defines a value computed from other values of this config. the result is kept and only computed again
+         * when one of the inputs changes on load or reload.
+         * </p>
+         * the function should only read the given inputs, and runs with the config locked.
+         * @param name the name of the value, used in error messages
+         * @param function computes the value from the inputs
+         * @param inputs the values of this config and earlier derived values the function reads
+         * @param <T> the computed type
+         * @return the created DerivedConfigValue
+         */
+        public <T> DerivedConfigValue<T> derive(String name, Supplier<T> function, ConfigDependency... inputs) {
+            DerivedConfigValue<T> value = new DerivedConfigValue<>(name, function, inputs);
+            derived.add(value);
+            return value;
+        }
+
+        /**
+         * defines a value computed from a single value of this config.
+         * @param name the name of the value, used in error messages
+         * @param input the value the function reads
+         * @param function computes the value from the input
+         * @param <I> the input type
+         * @param <T> the computed type
+         * @return the created DerivedConfigValue
+         */
+        public <I, T> DerivedConfigValue<T> derive(String name, ConfigValue<I> input, Function<I, T> function) {
+            return derive(name, () -> function.apply(input.peek()), input);
+        }
+
         protected void checkCurrentEdit() {
             if (currentEdit == null) throw new NullPointerException("ConfigValue must have a category!");
         }
@@ -340,6 +1029,45 @@ public class Config {
             if (this.type == null) throw new NullPointerException("ConfigBuilder must have a Type!");
             if (this.name == null || this.name.isEmpty()) throw new IllegalArgumentException(String.format("ConfigBuilder must have a valid file name! got '%s'", this.name));
             if (this.folder == null) throw new IllegalArgumentException("ConfigBuilder must have a valid parent folder! got 'null'");
+            // a remote config is a single file, its shards would never be fetched
+            if (this.sharded && this.remoteUrl != null) throw new IllegalArgumentException(String.format("Config %s can not be both sharded and remote", this.name));
+        }
+
+        protected void compileConstraints(Config config) {
+            for (Supplier<ConfigConstraint<?>> supplier : constraints) {
+                ConfigConstraint<?> constraint = supplier.get();
+                String problem = check(constraint);
+                if (problem != null) throw new IllegalArgumentException(String.format("Default value of '%s' is invalid: %s", constraint.getValue().getName(), problem));
+                config.constraints.add(constraint);
+            }
+        }
+
+        private static <T> String check(ConfigConstraint<T> constraint) {
+            return constraint.check(constraint.getValue().getDefault());
+        }
+
+        protected void checkPlayerValues(Config config) {
+            Set<ConfigValue<?>> known = Collections.newSetFromMap(new IdentityHashMap<>());
+            known.addAll(config.values);
+            for (ConfigValue<?> value : playerValues) {
+                if (!known.contains(value)) throw new IllegalArgumentException(String.format("Per-player value '%s' is not defined in this config", value.getName()));
+                if (!ConfigPlayers.isSupported(value.peek())) throw new IllegalArgumentException(String.format("Per-player value '%s' does not store a boolean, number, string or json", value.getName()));
+            }
+        }
+
+        protected void checkDerived(Config config) {
+            Set<ConfigDependency> known = Collections.newSetFromMap(new IdentityHashMap<>());
+            known.addAll(config.values);
+            for (DerivedConfigValue<?> value : derived) {
+                for (ConfigDependency input : value.inputs)
+                    if (!known.contains(input)) throw new IllegalArgumentException(String.format("Derived value '%s' depends on a value that is not defined before it in this config", value.getName()));
+                known.add(value);
+            }
+        }
+
+        private static void compact(ConfigValue<?> value) {
+            if (value instanceof JsonConfigValue) ((JsonConfigValue)value).setCompact(true);
+            else if (value instanceof ArrayConfigValue) ((ArrayConfigValue)value).setCompact(true);
         }
 
         /**
@@ -351,7 +1079,22 @@ public class Config {
          */
         public Config build() {
             this.checkValid();
-            return new Config(folder, name, type, categories);
+            Config config = new Config(folder, name, type, categories);
+            config.remoteUrl = remoteUrl;
+            config.remoteSha256 = remoteSha256;
+            config.storage = storage;
+            if (compactJson) config.forEachValue(Builder::compact);
+            config.sharded = sharded;
+            config.lazyShards = sharded && lazyShards && type != Type.WORLD;
+            compileConstraints(config);
+            checkDerived(config);
+            config.derived.addAll(derived);
+            for (DerivedConfigValue<?> value : derived) value.config = config;
+            config.updateDerived();
+            checkPlayerValues(config);
+            config.playerValues.addAll(playerValues);
+            if (!playerValues.isEmpty()) ConfigPlayers.register(config);
+            return config;
         }
     }
 
@@ -359,7 +1102,9 @@ public class Config {
         UNCATEGORIZED,
         COMMON,
         SERVER,
-        CLIENT;
+        CLIENT,
+        /** stored in the world save, the file in the config folder is the template new worlds start with */
+        WORLD;
 
         public String getFolder(String parent) {
             if (this == Type.UNCATEGORIZED) return parent;
@@ -0,0 +1,70 @@
+package configurator.api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+import java.util.function.Function;
+
+/**
+ * <p>
+ * converts between a java type and its json form, used for the keys and values of {@link MapConfigValue}s.
+ * </p>
+ * see {@link ConfigCodecs} for the built-in codecs.
+ * @param <T> the converted type
+ */
+public interface ConfigCodec<T> {
+    /**
+     * reads a value from json.
+     * @param json the json element
+     * @return the read value
+     * @throws RuntimeException if the element does not hold a valid value
+     */
+    T read(JsonElement json);
+
+    /**
+     * writes a value to json.
+     * @param value the value to write
+     * @return the json element
+     */
+    JsonElement write(T value);
+
+    /**
+     * reads a value from a json object key.
+     * @param key the key
+     * @return the read value
+     * @throws RuntimeException if the key is not a valid value
+     */
+    default T readKey(String key) {
+        return read(new JsonPrimitive(key));
+    }
+
+    /**
+     * writes a value as a json object key.
+     * @param value the value to write
+     * @return the key
+     */
+    default String writeKey(T value) {
+        return write(value).getAsString();
+    }
+
+    /**
+     * creates a codec from a pair of functions.
+     * @param reader reads a value from json
+     * @param writer writes a value to json
+     * @param <T> the converted type
+     * @return the codec
+     */
+    static <T> ConfigCodec<T> of(Function<JsonElement, T> reader, Function<T, JsonElement> writer) {
+        return new ConfigCodec<T>() {
+            @Override
+            public T read(JsonElement json) {
+                return reader.apply(json);
+            }
+
+            @Override
+            public JsonElement write(T value) {
+                return writer.apply(value);
+            }
+        };
+    }
+}
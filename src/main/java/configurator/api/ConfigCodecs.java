@@ -0,0 +1,26 @@
+package configurator.api;
+
+import com.google.gson.JsonPrimitive;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * the built-in {@link ConfigCodec}s.
+ */
+public final class ConfigCodecs {
+    public static final ConfigCodec<String> STRING = ConfigCodec.of(json -> {
+        if (!json.isJsonPrimitive()) throw new IllegalArgumentException("Expected a string, got " + json);
+        return json.getAsString();
+    }, JsonPrimitive::new);
+    public static final ConfigCodec<ResourceLocation> RESOURCE_LOCATION = ConfigCodec.of(json -> new ResourceLocation(STRING.read(json)), value -> new JsonPrimitive(value.toString()));
+    public static final ConfigCodec<Boolean> BOOLEAN = ConfigCodec.of(json -> {
+        String value = STRING.read(json);
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) throw new IllegalArgumentException("Expected a boolean, got " + value);
+        return Boolean.parseBoolean(value);
+    }, JsonPrimitive::new);
+    public static final ConfigCodec<Integer> INTEGER = ConfigCodec.of(json -> Integer.parseInt(STRING.read(json)), JsonPrimitive::new);
+    public static final ConfigCodec<Long> LONG = ConfigCodec.of(json -> Long.parseLong(STRING.read(json)), JsonPrimitive::new);
+    public static final ConfigCodec<Float> FLOAT = ConfigCodec.of(json -> Float.parseFloat(STRING.read(json)), JsonPrimitive::new);
+    public static final ConfigCodec<Double> DOUBLE = ConfigCodec.of(json -> Double.parseDouble(STRING.read(json)), JsonPrimitive::new);
+
+    private ConfigCodecs() {}
+}
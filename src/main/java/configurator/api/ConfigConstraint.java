@@ -0,0 +1,178 @@
+package configurator.api;
+
+import com.google.gson.JsonArray;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * a check on the value of a {@link ConfigValue}, defined through the constrained definitions of {@link Config.Builder}.
+ * </p>
+ * constraints are applied once after every load and reload, so reading a constrained value always gives a valid value.
+ * @param <T> the stored type
+ */
+public abstract class ConfigConstraint<T> {
+    protected final ConfigValue<T> value;
+    protected final ConstraintPolicy policy;
+
+    protected ConfigConstraint(ConfigValue<T> value, ConstraintPolicy policy) {
+        this.value = value;
+        this.policy = policy;
+    }
+
+    /**
+     * checks a value against this constraint.
+     * @param value the value to check
+     * @return the reason the value is invalid, or null if it is valid
+     */
+    @Nullable
+    public abstract String check(@Nullable T value);
+
+    /**
+     * gets the nearest valid value of an invalid value.
+     * @param value the invalid value
+     * @return the nearest valid value, or null if there is none
+     */
+    @Nullable
+    protected T clamp(T value) {
+        return null;
+    }
+
+    /**
+     * <p>
+     * checks the current value and fixes it according to the policy.
+     * </p>
+     * This method is for internal use, it is called with the config locked.
+     * @return a description of the fixed problem, or null if the value is valid
+     */
+    @Nullable
+    public String apply() {
+        T current = value.peek();
+        String problem = check(current);
+        if (problem == null) return null;
+
+        T fixed = policy == ConstraintPolicy.CLAMP && current != null ? clamp(current) : null;
+        String path = value.getPath();
+        if (fixed != null) {
+            value.set(fixed);
+            return String.format("%s: %s, clamped to %s", path, problem, fixed);
+        }
+        value.set(value.getDefault());
+        return String.format("%s: %s, using the default %s", path, problem, value.getDefault());
+    }
+
+    /**
+     * Gets the value this constraint checks.
+     * @return the constrained value
+     */
+    public ConfigValue<T> getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the top-level category of the constrained value.
+     * @return the top-level category
+     */
+    public ConfigCategory getTopCategory() {
+        ConfigCategory category = value.getParentCategory();
+        while (category.getParentCategory() != null) category = category.getParentCategory();
+        return category;
+    }
+
+    /**
+     * creates a constraint that keeps a value between two bounds.
+     * @param value the constrained value
+     * @param min the lowest valid value
+     * @param max the highest valid value
+     * @param policy what to do with invalid values
+     * @param <N> the stored type
+     * @return the constraint
+     */
+    public static <N extends Comparable<N>> ConfigConstraint<N> range(ConfigValue<N> value, N min, N max, ConstraintPolicy policy) {
+        if (min.compareTo(max) > 0) throw new IllegalArgumentException(String.format("Range of %s is empty: %s > %s", value.getName(), min, max));
+        return new ConfigConstraint<N>(value, policy) {
+            @Override
+            public String check(@Nullable N value) {
+                if (value == null) return "missing";
+                if (value.compareTo(min) < 0) return String.format("%s is below the minimum %s", value, min);
+                if (value.compareTo(max) > 0) return String.format("%s is above the maximum %s", value, max);
+                return null;
+            }
+
+            @Override
+            protected N clamp(N value) {
+                return value.compareTo(min) < 0 ? min : max;
+            }
+        };
+    }
+
+    /**
+     * creates a constraint that only allows strings matching a regular expression.
+     * @param value the constrained value
+     * @param pattern the pattern the whole string has to match
+     * @param policy what to do with invalid values
+     * @return the constraint
+     */
+    public static ConfigConstraint<String> matching(ConfigValue<String> value, Pattern pattern, ConstraintPolicy policy) {
+        return new ConfigConstraint<String>(value, policy) {
+            @Override
+            public String check(@Nullable String value) {
+                if (value == null) return "missing";
+                return pattern.matcher(value).matches() ? null : String.format("'%s' does not match %s", value, pattern.pattern());
+            }
+        };
+    }
+
+    /**
+     * creates a constraint that only allows the given strings.
+     * @param value the constrained value
+     * @param allowed the allowed strings
+     * @param policy what to do with invalid values
+     * @return the constraint
+     */
+    public static ConfigConstraint<String> allowed(ConfigValue<String> value, Collection<String> allowed, ConstraintPolicy policy) {
+        Set<String> set = Collections.unmodifiableSet(new LinkedHashSet<>(allowed));
+        return new ConfigConstraint<String>(value, policy) {
+            @Override
+            public String check(@Nullable String value) {
+                if (value == null) return "missing";
+                return set.contains(value) ? null : String.format("'%s' is not one of %s", value, set);
+            }
+        };
+    }
+
+    /**
+     * creates a constraint that keeps the size of an array between two bounds.
+     * arrays that are too long are clamped by dropping the last elements.
+     * @param value the constrained value
+     * @param minSize the lowest valid size
+     * @param maxSize the highest valid size
+     * @param policy what to do with invalid values
+     * @return the constraint
+     */
+    public static ConfigConstraint<JsonArray> size(ConfigValue<JsonArray> value, int minSize, int maxSize, ConstraintPolicy policy) {
+        if (minSize < 0 || minSize > maxSize) throw new IllegalArgumentException(String.format("Invalid size range of %s: %d to %d", value.getName(), minSize, maxSize));
+        return new ConfigConstraint<JsonArray>(value, policy) {
+            @Override
+            public String check(@Nullable JsonArray value) {
+                if (value == null) return "missing";
+                if (value.size() < minSize) return String.format("%d elements are fewer than the minimum %d", value.size(), minSize);
+                if (value.size() > maxSize) return String.format("%d elements are more than the maximum %d", value.size(), maxSize);
+                return null;
+            }
+
+            @Override
+            protected JsonArray clamp(JsonArray value) {
+                if (value.size() < minSize) return null;
+                JsonArray clamped = new JsonArray();
+                for (int i = 0; i < maxSize; i++) clamped.add(value.get(i));
+                return clamped;
+            }
+        };
+    }
+}
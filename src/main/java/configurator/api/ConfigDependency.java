@@ -0,0 +1,15 @@
+package configurator.api;
+
+/**
+ * <p>
+ * something a {@link DerivedConfigValue} can be computed from, either a {@link ConfigValue} or another derived value.
+ * </p>
+ * the version changes whenever the value changes, derived values are only computed again when the version of an input changed.
+ */
+public interface ConfigDependency {
+    /**
+     * gets the version of the current value.
+     * @return the version
+     */
+    long getVersion();
+}
@@ -0,0 +1,192 @@
+package configurator.api;
+
+import configurator.ConfigShards;
+import configurator.ConfigWorlds;
+import configurator.ConfigWriter;
+import configurator.Configurator;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>
+ * A batch of changes to the values of a {@link Config}, started with {@link Config#edit()}.
+ * </p><p>
+ * Changes are only staged until {@link ConfigEdit#commit()}, which checks them against the constraints of the config together,
+ * writes the config files once, publishes all of them in one step with {@link Config#publish(Runnable)} and notifies the
+ * listeners of the config once. Readers never see part of an edit, nor an edit whose files could not be written.
+ * </p>
+ * If a staged value breaks a constraint or is replaced by an override or property, nothing is changed. If the files can not
+ * be written they are left as they were and the old values are put back.
+ */
+public class ConfigEdit {
+    protected final Config config;
+    protected final Map<ConfigValue<?>, Object> staged = new LinkedHashMap<>();
+    protected boolean committed = false;
+
+    protected ConfigEdit(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * stages a new value. staging a value twice keeps the last one.
+     * @param value a value of the edited config
+     * @param newValue the new value
+     * @param <T> the stored type
+     * @return this edit
+     * @throws IllegalArgumentException if the value is not part of the edited config
+     */
+    public <T> ConfigEdit set(ConfigValue<T> value, @Nullable T newValue) {
+        if (committed) throw new IllegalStateException("This edit was already committed");
+        if (!config.values.contains(value)) throw new IllegalArgumentException(String.format("Value '%s' is not part of config %s", value.getPath(), config.name));
+        staged.put(value, newValue);
+        return this;
+    }
+
+    /**
+     * stages the default value of a value.
+     * @param value a value of the edited config
+     * @return this edit
+     */
+    @SuppressWarnings("unchecked")
+    public ConfigEdit reset(ConfigValue<?> value) {
+        return set((ConfigValue<Object>)value, value.getDefault());
+    }
+
+    /**
+     * @return the staged values, in the order they were first staged
+     */
+    public List<ConfigValue<?>> getStaged() {
+        return Collections.unmodifiableList(new ArrayList<>(staged.keySet()));
+    }
+
+    /**
+     * drops every staged value.
+     */
+    public void discard() {
+        staged.clear();
+    }
+
+    /**
+     * checks the staged values against the constraints of the config, without changing anything.
+     * values replaced by an override or property can not be edited, the file only holds what lies underneath.
+     * @return a description of every invalid staged value
+     */
+    public List<String> validate() {
+        List<String> problems = new ArrayList<>();
+        for (ConfigValue<?> value : staged.keySet()) {
+            ConfigLayer layer = value.getLayer();
+            if (layer == ConfigLayer.OVERRIDE || layer == ConfigLayer.PROPERTY) problems.add(value.getPath() + ": replaced by the " + layer.name().toLowerCase(Locale.ROOT) + " layer, change it there");
+        }
+        for (ConfigConstraint<?> constraint : config.getConstraints()) {
+            ConfigValue<?> value = constraint.getValue();
+            if (!staged.containsKey(value)) continue;
+            String problem = check(constraint, staged.get(value));
+            if (problem != null) problems.add(value.getPath() + ": " + problem);
+        }
+        return problems;
+    }
+
+    /**
+     * <p>
+     * writes the staged values to the config files once, then publishes them and notifies the listeners of the config once.
+     * readers of the config wait while the files are written.
+     * </p>
+     * values in shards that are not loaded yet load their shard first, so the written files hold every other value as well.
+     * @return the values that changed, the listeners are not notified if none did
+     * @throws IllegalArgumentException if a staged value is invalid, see {@link ConfigEdit#validate()}, nothing is changed then
+     * @throws IllegalStateException if the config files could not be written, they are left as they were and the old values are put back
+     */
+    public List<ConfigValue<?>> commit() {
+        if (committed) throw new IllegalStateException("This edit was already committed");
+        // the layers of the values are only known once they are loaded
+        Configurator.loadConfig(config);
+        if (config.isSharded()) for (ConfigValue<?> value : staged.keySet()) ConfigShards.loadShard(config, getTopCategory(value));
+
+        List<ConfigValue<?>> changed = new ArrayList<>();
+        synchronized (config) {
+            List<String> problems = validate();
+            if (!problems.isEmpty()) throw new IllegalArgumentException(String.format("Edit of config %s has %d invalid values:\n  %s", config.name, problems.size(), String.join("\n  ", problems)));
+            committed = true;
+            List<Object> states = new ArrayList<>();
+            List<ConfigLayer> layers = new ArrayList<>();
+            // the file is written from the values, readers wait until it is in place and never see an edit that is rolled back
+            config.publish(() -> {
+                for (Map.Entry<ConfigValue<?>, Object> entry : staged.entrySet()) {
+                    ConfigValue<?> value = entry.getKey();
+                    Object state = value.captureState();
+                    ConfigLayer layer = value.layer;
+                    if (!publish(value, entry.getValue())) continue;
+                    changed.add(value);
+                    states.add(state);
+                    layers.add(layer);
+                }
+                if (changed.isEmpty()) return;
+
+                boolean written;
+                try {
+                    written = ConfigWriter.saveConfig(config);
+                } catch (RuntimeException e) {
+                    rollback(changed, states, layers);
+                    throw e;
+                }
+                if (!written) {
+                    rollback(changed, states, layers);
+                    throw new IllegalStateException(String.format("Could not write config %s, the edit was rolled back", config.name));
+                }
+                config.updateDerived();
+            });
+            if (changed.isEmpty()) return changed;
+        }
+        ConfigWorlds.invalidate(config);
+        config.notifyEdit(changed);
+        return changed;
+    }
+
+    private static void rollback(List<ConfigValue<?>> changed, List<Object> states, List<ConfigLayer> layers) {
+        for (int i = 0; i < changed.size(); i++) {
+            ConfigValue<?> value = changed.get(i);
+            value.restoreState(states.get(i));
+            value.layer = layers.get(i);
+            value.version++;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> boolean publish(ConfigValue<T> value, @Nullable Object newValue) {
+        long version = value.version;
+        value.set((T)newValue);
+        if (value.version == version) return false;
+        value.layer = ConfigLayer.FILE;
+        return true;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static <T> String check(ConfigConstraint<T> constraint, @Nullable Object value) {
+        return constraint.check((T)value);
+    }
+
+    private static ConfigCategory getTopCategory(ConfigValue<?> value) {
+        ConfigCategory category = value.getParentCategory();
+        while (category.getParentCategory() != null) category = category.getParentCategory();
+        return category;
+    }
+
+    /**
+     * Called once after every committed edit that changed a value.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param config the edited config
+         * @param changed the values that changed
+         */
+        void onEdit(Config config, List<ConfigValue<?>> changed);
+    }
+}
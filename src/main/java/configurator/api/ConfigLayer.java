@@ -0,0 +1,18 @@
+package configurator.api;
+
+/**
+ * <p>
+ * The sources a config value can come from, from lowest to highest priority.
+ * </p>
+ * When a config is loaded or reloaded every value takes its value from the highest layer that defines it.
+ */
+public enum ConfigLayer {
+    /** the default value given to the config builder */
+    DEFAULT,
+    /** the config file, or its entry in the config bundle */
+    FILE,
+    /** the per-server override file in the overrides folder */
+    OVERRIDE,
+    /** a -Dconfigurator. system property or CONFIGURATOR_ environment variable */
+    PROPERTY
+}
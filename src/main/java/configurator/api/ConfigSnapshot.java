@@ -0,0 +1,75 @@
+package configurator.api;
+
+import com.google.gson.JsonElement;
+import configurator.ConfigOverlays;
+
+import java.util.List;
+
+/**
+ * <p>
+ * A copy of every value of a {@link Config}, including state built from the values such as deserialized values
+ * and the file values behind overrides.
+ * </p>
+ * Restoring a snapshot puts the copied values back without reading or deserializing anything,
+ * and readers that do not lock the config see all of them change at once.
+ */
+public class ConfigSnapshot {
+    protected final Config config;
+    protected final Object[] states;
+    protected final ConfigLayer[] layers;
+    protected final JsonElement[] fileValues;
+    /** the modification time of the file the snapshot was taken from */
+    public final long lastModified;
+
+    protected ConfigSnapshot(Config config, long lastModified) {
+        List<ConfigValue<?>> configValues = config.getValues();
+        this.config = config;
+        this.states = new Object[configValues.size()];
+        this.layers = new ConfigLayer[configValues.size()];
+        this.fileValues = new JsonElement[configValues.size()];
+        this.lastModified = lastModified;
+
+        for (int i = 0; i < states.length; i++) {
+            ConfigValue<?> value = configValues.get(i);
+            states[i] = value.captureState();
+            layers[i] = value.layer;
+            fileValues[i] = ConfigOverlays.getFileValue(value);
+        }
+    }
+
+    /**
+     * Copies the current values of a config.
+     * @param config the config to copy
+     * @param lastModified the modification time of the file the values were read from
+     * @return the snapshot
+     */
+    public static ConfigSnapshot capture(Config config, long lastModified) {
+        return new ConfigSnapshot(config, lastModified);
+    }
+
+    /**
+     * Gets the config this snapshot was taken from.
+     * @return the config
+     */
+    public Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Puts the copied values back into the config in one step, see {@link Config#publish(Runnable)}.
+     * Called with the config locked.
+     */
+    public void restore() {
+        config.publish(() -> {
+            List<ConfigValue<?>> configValues = config.getValues();
+            for (int i = 0; i < states.length; i++) {
+                ConfigValue<?> value = configValues.get(i);
+                value.restoreState(states[i]);
+                value.layer = layers[i];
+                ConfigOverlays.setFileValue(value, fileValues[i]);
+                value.version++;
+            }
+            config.updateDerived();
+        });
+    }
+}
@@ -2,13 +2,54 @@ package configurator.api;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+import configurator.ConfigPlayers;
+import configurator.ConfigProfiler;
+import configurator.ConfigWriter;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConfigValue<T> implements ConfigDependency {
+    /** if a class overrides {@link ConfigValue#writeToJson(JsonObject)} below the class that streams it */
+    private static final ClassValue<Boolean> TREE_OUTPUT = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                Class<?> tree = type.getMethod("writeToJson", JsonObject.class).getDeclaringClass();
+                Class<?> stream = type.getMethod("writeToJson", JsonWriter.class).getDeclaringClass();
+                return tree != stream && stream.isAssignableFrom(tree);
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
 
-public class ConfigValue<T> {
     protected final String name;
     protected final ConfigCategory parent;
-    protected T value;
+    /** the config this value belongs to, set when the config is built */
+    @Nullable
+    protected Config config;
+    /** volatile so a read of one value is never moved past the check of the next read, which would let it see a newer value */
+    protected volatile T value;
+    protected T defaultValue;
+    /** the layer the current value was resolved from */
+    protected ConfigLayer layer = ConfigLayer.DEFAULT;
+    /**
+     * runs before reads while it is set: the loader of a lazily registered config or shard, or a wait while the config
+     * publishes new values. null once the config is loaded, so reads only check this one field
+     */
+    @Nullable
+    protected volatile Runnable lazyLoader;
+    /** counts reads of this value while read profiling is enabled */
+    protected final LongAdder reads = new LongAdder();
+    /** changes whenever the value changes, see {@link ConfigDependency} */
+    protected long version;
 
     public ConfigValue(String name, ConfigCategory parent) {
         this.name = name;
@@ -22,17 +63,187 @@ public class ConfigValue<T> {
         else json.addProperty(name, value.toString());
     }
 
+    /**
+     * Streams this value into a json writer, with the same output as {@link ConfigValue#writeToJson(JsonObject)}.
+     * Subclasses that only override {@link ConfigValue#writeToJson(JsonObject)} are written through it.
+     * @param writer the json writer of the parent category
+     * @throws IOException if the writer fails
+     */
+    public void writeToJson(JsonWriter writer) throws IOException {
+        if (writesTree()) {
+            JsonObject json = new JsonObject();
+            writeToJson(json);
+            for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+                writer.name(entry.getKey());
+                ConfigWriter.GSON.toJson(entry.getValue(), writer);
+            }
+            return;
+        }
+        writer.name(name);
+        if (value == null) writer.nullValue();
+        else if (value instanceof Number) writer.value((Number)value);
+        else if (value instanceof Boolean) writer.value((Boolean)value);
+        else if (value instanceof JsonElement) ConfigWriter.GSON.toJson((JsonElement)value, writer);
+        else writer.value(value.toString());
+    }
+
+    /**
+     * Checks if this value has to be written through {@link ConfigValue#writeToJson(JsonObject)}, because its class
+     * overrides it without overriding {@link ConfigValue#writeToJson(JsonWriter)}.
+     * @return if the streaming output falls back to the json object output
+     */
+    protected boolean writesTree() {
+        return TREE_OUTPUT.get(getClass());
+    }
+
     /**
      * <p>
      * Sets the value in this ConfigValue to the given value.
      * </p>
-     * This method for internal use.
+     * This method for internal use, change values from code with {@link Config#edit()}.
      * @param value the value to put into this ConfigValue
      */
     public void set(@Nullable T value) {
+        if (!Objects.equals(this.value, value)) version++;
         this.value = value;
     }
 
+    /**
+     * <p>
+     * Stores the current value as the default value of this ConfigValue.
+     * </p>
+     * This method is for internal use.
+     */
+    public void markDefault() {
+        this.defaultValue = peek();
+        this.layer = ConfigLayer.DEFAULT;
+    }
+
+    /**
+     * Sets this ConfigValue back to its default value.
+     */
+    public void reset() {
+        set(getDefault());
+        this.layer = ConfigLayer.DEFAULT;
+    }
+
+    /**
+     * Gets the default value of this ConfigValue.
+     * @return the default value
+     */
+    @Nullable
+    public T getDefault() {
+        return defaultValue;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the layer that the current value came from.
+     * @return the layer of the current value
+     */
+    public ConfigLayer getLayer() {
+        return layer;
+    }
+
+    /**
+     * <p>
+     * Sets the layer that the current value came from.
+     * </p>
+     * This method is for internal use.
+     * @param layer the layer of the current value
+     */
+    public void setLayer(ConfigLayer layer) {
+        this.layer = layer;
+    }
+
+    /**
+     * <p>
+     * Sets the loader that is run before this value is first read.
+     * </p>
+     * This method is for internal use.
+     * @param loader the loader of the lazy config, or null once the config is loaded
+     */
+    public void setLazyLoader(@Nullable Runnable loader) {
+        Config config = this.config;
+        // a value loaded while its config publishes keeps waiting for the rest
+        this.lazyLoader = loader == null && config != null && config.publishing ? config.awaiter : loader;
+    }
+
+    /**
+     * makes reads wait while the config publishes new values, see {@link Config#publish(Runnable)}.
+     */
+    void hold(Runnable awaiter) {
+        if (lazyLoader == null) lazyLoader = awaiter;
+    }
+
+    void release(Runnable awaiter) {
+        if (lazyLoader == awaiter) lazyLoader = null;
+    }
+
+    /**
+     * Loads the config of this value if it was registered lazily and has not been loaded yet,
+     * or waits for the values the config is publishing, see {@link Config#publish(Runnable)}.
+     * A read that passed this check right before a publish started may see a value set halfway through it,
+     * so reads check {@link #lazyLoader} again after reading and read once more if it is set.
+     */
+    protected void ensureLoaded() {
+        Runnable loader = lazyLoader;
+        while (loader != null) {
+            loader.run();
+            // loading a config with lazy shards hands its values over to the loaders of their shards
+            Runnable next = lazyLoader;
+            if (next == loader) return;
+            loader = next;
+        }
+    }
+
+    /**
+     * Gets how many times this value was read while read profiling was enabled.
+     * @return the read count
+     */
+    public long getReads() {
+        return reads.sum();
+    }
+
+    /**
+     * Sets the read count of this value back to zero.
+     */
+    public void resetReads() {
+        reads.reset();
+    }
+
+    /**
+     * Copies the state of this value for a {@link ConfigSnapshot}.
+     * Values that build state from their stored value should include it, so restoring does not need to build it again.
+     * @return the state of this value
+     */
+    @Nullable
+    protected Object captureState() {
+        return value;
+    }
+
+    /**
+     * Puts a state from {@link ConfigValue#captureState()} back into this value.
+     * @param state the captured state
+     */
+    @SuppressWarnings("unchecked")
+    protected void restoreState(@Nullable Object state) {
+        this.value = (T)state;
+    }
+
+    /**
+     * Gets the stored value without loading the config or counting the read, for code that runs while the config is loading.
+     * @return the stored value
+     */
+    @Nullable
+    protected T peek() {
+        return value;
+    }
+
     /**
      * Gets the {@link ConfigCategory} that this ConfigValue exists under.
      * @return the category this ConfigValue exists in
@@ -49,12 +260,39 @@ public class ConfigValue<T> {
         return name;
     }
 
+    /**
+     * Gets the path of this ConfigValue inside its config, the names of its categories and its own name joined with dots.
+     * @return the path of this config
+     */
+    public String getPath() {
+        StringBuilder path = new StringBuilder(name);
+        for (ConfigCategory category = parent; category != null; category = category.getParentCategory()) path.insert(0, category.getName() + ".");
+        return path.toString();
+    }
+
     /**
      * Gets the stored value from this ConfigValue.
      * @return the stored value
      */
     @Nullable
     public T get() {
+        ensureLoaded();
+        if (ConfigProfiler.isEnabled()) reads.increment();
+        T value = this.value;
+        if (lazyLoader != null) {
+            ensureLoaded();
+            value = this.value;
+        }
         return value;
     }
+
+    /**
+     * Gets the value a player sees, their override if this value is scoped per player and they have one, see {@link ConfigPlayers}.
+     * @param player the UUID of the player
+     * @return the override of the player, or the stored value
+     */
+    @Nullable
+    public T getFor(UUID player) {
+        return ConfigPlayers.get(this, player);
+    }
 }
@@ -0,0 +1,11 @@
+package configurator.api;
+
+/**
+ * what a {@link ConfigConstraint} does with a value that breaks it.
+ */
+public enum ConstraintPolicy {
+    /** moves the value to the nearest valid value where there is one, e.g. the bounds of a range, otherwise uses the default */
+    CLAMP,
+    /** always uses the default value */
+    DEFAULT
+}
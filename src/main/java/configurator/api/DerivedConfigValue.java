@@ -0,0 +1,128 @@
+package configurator.api;
+
+import configurator.Configurator;
+
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * a value computed from other values of the same config, e.g. a lookup table built from a few arrays.
+ * </p><p>
+ * the result is kept, and is only computed again when the config is loaded or reloaded and one of the inputs changed.
+ * derived values are updated in the order they were defined, so a derived value can be an input of a later one.
+ * </p>
+ * reading a derived value never runs the function on the reading thread.
+ * derived values are not written to the config file.
+ * @param <T> the computed type
+ */
+public class DerivedConfigValue<T> implements ConfigDependency, Supplier<T> {
+    protected final String name;
+    protected final Supplier<T> function;
+    protected final ConfigDependency[] inputs;
+    protected final long[] inputVersions;
+    protected volatile T value;
+    protected long version;
+    protected boolean computed = false;
+    /** runs before reads while it is set, see {@link ConfigValue#lazyLoader} */
+    @Nullable
+    protected volatile Runnable lazyLoader;
+    /** the config this value belongs to, set when the config is built */
+    @Nullable
+    protected Config config;
+
+    public DerivedConfigValue(String name, Supplier<T> function, ConfigDependency... inputs) {
+        this.name = name;
+        this.function = function;
+        this.inputs = inputs.clone();
+        this.inputVersions = new long[inputs.length];
+    }
+
+    /**
+     * <p>
+     * computes the value again if one of the inputs changed since the last successful computation,
+     * a failed computation keeps the previous value and is tried again on the next update.
+     * </p>
+     * This method is for internal use, it is called with the config locked.
+     * @return if the value was computed again
+     */
+    public boolean update() {
+        boolean changed = !computed;
+        for (int i = 0; i < inputs.length && !changed; i++) changed = inputs[i].getVersion() != inputVersions[i];
+        if (!changed) return false;
+
+        try {
+            this.value = function.get();
+        } catch (RuntimeException e) {
+            Configurator.LOGGER.error("Could not compute derived config value {}, keeping the previous value", name);
+            Configurator.LOGGER.error(e);
+            return false;
+        }
+        // the inputs can not change while the config is locked
+        for (int i = 0; i < inputs.length; i++) inputVersions[i] = inputs[i].getVersion();
+        this.computed = true;
+        this.version++;
+        return true;
+    }
+
+    /**
+     * Gets the computed value.
+     * @return the computed value
+     */
+    @Nullable
+    @Override
+    public T get() {
+        ensureLoaded();
+        T value = this.value;
+        // a publish that started right after the check may have set the value halfway, read it again once it is done
+        if (lazyLoader != null) {
+            ensureLoaded();
+            value = this.value;
+        }
+        return value;
+    }
+
+    private void ensureLoaded() {
+        Runnable loader = lazyLoader;
+        while (loader != null) {
+            loader.run();
+            Runnable next = lazyLoader;
+            if (next == loader) return;
+            loader = next;
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the values this value is computed from.
+     * @return the inputs
+     */
+    public ConfigDependency[] getInputs() {
+        return inputs.clone();
+    }
+
+    /**
+     * Sets the loader that is run before this value is first read. This method is for internal use.
+     * @param loader the loader of the config, or null once it is loaded
+     */
+    public void setLazyLoader(@Nullable Runnable loader) {
+        Config config = this.config;
+        this.lazyLoader = loader == null && config != null && config.publishing ? config.awaiter : loader;
+    }
+
+    void hold(Runnable awaiter) {
+        if (lazyLoader == null) lazyLoader = awaiter;
+    }
+
+    void release(Runnable awaiter) {
+        if (lazyLoader == awaiter) lazyLoader = null;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
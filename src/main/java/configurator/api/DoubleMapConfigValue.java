@@ -0,0 +1,31 @@
+package configurator.api;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * stores a map of double values as a json object, keys are converted with a {@link ConfigCodec}.
+ * </p>
+ * lookups go through a {@link FrozenDoubleMap} built on load, so they do not touch json or box the values.
+ * @param <K> the key type
+ */
+public class DoubleMapConfigValue<K> extends AbstractMapConfigValue<K, Double, FrozenDoubleMap<K>> {
+    public DoubleMapConfigValue(String name, ConfigCodec<K> keyCodec, ConfigCategory parentCategory) {
+        super(name, keyCodec, ConfigCodecs.DOUBLE, parentCategory);
+    }
+
+    /**
+     * gets the value of a key.
+     * @param key the key
+     * @param defaultValue the value returned if the map does not contain the key
+     * @return the value, or the default value
+     */
+    public double getDouble(K key, double defaultValue) {
+        return getMap().getDouble(key, defaultValue);
+    }
+
+    @Override
+    protected FrozenDoubleMap<K> freeze(Map<K, Double> decoded) {
+        return FrozenDoubleMap.of(decoded);
+    }
+}
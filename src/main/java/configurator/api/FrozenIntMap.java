@@ -0,0 +1,87 @@
+package configurator.api;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * an immutable hash map from keys to int values using open addressing.
+ * </p>
+ * lookups do not allocate or box, null keys are not stored.
+ * @param <K> the key type
+ */
+public final class FrozenIntMap<K> {
+    private final Object[] keys;
+    private final int[] values;
+    private final int size;
+
+    private FrozenIntMap(Map<K, Integer> map) {
+        this.keys = new Object[FrozenTables.capacity(map.size())];
+        this.values = new int[keys.length];
+        int size = 0;
+        for (Map.Entry<K, Integer> entry : map.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) continue;
+            values[FrozenTables.insert(keys, entry.getKey())] = entry.getValue();
+            size++;
+        }
+        this.size = size;
+    }
+
+    /**
+     * copies a map into a frozen map.
+     * @param map the map to copy
+     * @param <K> the key type
+     * @return the frozen map
+     */
+    public static <K> FrozenIntMap<K> of(Map<K, Integer> map) {
+        return new FrozenIntMap<>(map);
+    }
+
+    /**
+     * gets the value of a key.
+     * @param key the key
+     * @param defaultValue the value returned if the map does not contain the key
+     * @return the value, or the default value
+     */
+    public int getInt(@Nullable Object key, int defaultValue) {
+        if (key == null) return defaultValue;
+        int slot = FrozenTables.find(keys, key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    /**
+     * checks if the map contains a key.
+     * @param key the key
+     * @return if the map contains the key
+     */
+    public boolean containsKey(@Nullable Object key) {
+        return key != null && FrozenTables.find(keys, key) >= 0;
+    }
+
+    /**
+     * @return the amount of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return if the map has no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * copies this map into an unmodifiable java map.
+     * @return the copy
+     */
+    @SuppressWarnings("unchecked")
+    public Map<K, Integer> toMap() {
+        Map<K, Integer> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < keys.length; i++) if (keys[i] != null) map.put((K)keys[i], values[i]);
+        return Collections.unmodifiableMap(map);
+    }
+}
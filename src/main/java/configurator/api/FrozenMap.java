@@ -0,0 +1,110 @@
+package configurator.api;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>
+ * an immutable hash map using open addressing.
+ * </p>
+ * lookups do not allocate, null keys and values are not stored.
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class FrozenMap<K, V> {
+    private final Object[] keys;
+    private final Object[] values;
+    private final int size;
+
+    private FrozenMap(Map<K, V> map) {
+        this.keys = new Object[FrozenTables.capacity(map.size())];
+        this.values = new Object[keys.length];
+        int size = 0;
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) continue;
+            values[FrozenTables.insert(keys, entry.getKey())] = entry.getValue();
+            size++;
+        }
+        this.size = size;
+    }
+
+    /**
+     * copies a map into a frozen map.
+     * @param map the map to copy
+     * @param <K> the key type
+     * @param <V> the value type
+     * @return the frozen map
+     */
+    public static <K, V> FrozenMap<K, V> of(Map<K, V> map) {
+        return new FrozenMap<>(map);
+    }
+
+    /**
+     * gets the value of a key.
+     * @param key the key
+     * @return the value, or null if the map does not contain the key
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(@Nullable Object key) {
+        if (key == null) return null;
+        int slot = FrozenTables.find(keys, key);
+        return slot >= 0 ? (V)values[slot] : null;
+    }
+
+    /**
+     * gets the value of a key.
+     * @param key the key
+     * @param defaultValue the value returned if the map does not contain the key
+     * @return the value, or the default value
+     */
+    public V getOrDefault(@Nullable Object key, V defaultValue) {
+        V value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * checks if the map contains a key.
+     * @param key the key
+     * @return if the map contains the key
+     */
+    public boolean containsKey(@Nullable Object key) {
+        return key != null && FrozenTables.find(keys, key) >= 0;
+    }
+
+    /**
+     * @return the amount of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return if the map has no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * runs an action for every entry, in no particular order.
+     * @param action the action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < keys.length; i++) if (keys[i] != null) action.accept((K)keys[i], (V)values[i]);
+    }
+
+    /**
+     * copies this map into an unmodifiable java map.
+     * @return the copy
+     */
+    public Map<K, V> toMap() {
+        Map<K, V> map = new LinkedHashMap<>(size * 2);
+        forEach(map::put);
+        return Collections.unmodifiableMap(map);
+    }
+}
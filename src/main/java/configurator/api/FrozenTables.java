@@ -0,0 +1,45 @@
+package configurator.api;
+
+/**
+ * open addressing helpers shared by the frozen maps.
+ * tables have a power of two size and are at most half full, so probing with linear steps stays short.
+ */
+final class FrozenTables {
+    private FrozenTables() {}
+
+    static int capacity(int size) {
+        int capacity = 2;
+        while (capacity < size * 2) capacity <<= 1;
+        return capacity;
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * finds the slot of a key.
+     * @return the slot, or -1 if the table does not contain the key
+     */
+    static int find(Object[] keys, Object key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Object found = keys[i];
+            if (found == null) return -1;
+            if (found.equals(key)) return i;
+        }
+    }
+
+    /**
+     * finds the slot to store a key in, keys are never stored twice.
+     * @return the slot
+     */
+    static int insert(Object[] keys, Object key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != null && !keys[i].equals(key)) i = (i + 1) & mask;
+        keys[i] = key;
+        return i;
+    }
+}
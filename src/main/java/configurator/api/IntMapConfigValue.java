@@ -0,0 +1,31 @@
+package configurator.api;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * stores a map of int values as a json object, keys are converted with a {@link ConfigCodec}.
+ * </p>
+ * lookups go through a {@link FrozenIntMap} built on load, so they do not touch json or box the values.
+ * @param <K> the key type
+ */
+public class IntMapConfigValue<K> extends AbstractMapConfigValue<K, Integer, FrozenIntMap<K>> {
+    public IntMapConfigValue(String name, ConfigCodec<K> keyCodec, ConfigCategory parentCategory) {
+        super(name, keyCodec, ConfigCodecs.INTEGER, parentCategory);
+    }
+
+    /**
+     * gets the value of a key.
+     * @param key the key
+     * @param defaultValue the value returned if the map does not contain the key
+     * @return the value, or the default value
+     */
+    public int getInt(K key, int defaultValue) {
+        return getMap().getInt(key, defaultValue);
+    }
+
+    @Override
+    protected FrozenIntMap<K> freeze(Map<K, Integer> decoded) {
+        return FrozenIntMap.of(decoded);
+    }
+}
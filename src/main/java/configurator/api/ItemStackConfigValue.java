@@ -1,9 +1,7 @@
 package configurator.api;
 
-import configurator.Configurator;
+import configurator.ItemStackCache;
 import net.minecraft.item.ItemStack;
-import net.minecraft.nbt.JsonToNBT;
-import net.minecraft.nbt.NBTException;
 import net.minecraft.nbt.NBTTagCompound;
 
 import javax.annotation.Nullable;
@@ -13,6 +11,7 @@ import javax.annotation.Nullable;
  * stores an item stack as a string.
  * </p>
  * use {@link ItemStackConfigValue#getReal()} to get the actual item stack.
+ * parsed item strings are shared through the {@link ItemStackCache}.
  */
 public class ItemStackConfigValue extends SerializedConfigValue<ItemStack> {
     public ItemStackConfigValue(String name, ConfigCategory parent) {
@@ -21,14 +20,7 @@ public class ItemStackConfigValue extends SerializedConfigValue<ItemStack> {
 
     @Override
     public ItemStack deserialize(@Nullable String serializedValue) {
-        if (serializedValue != null) {
-            try {
-                return new ItemStack(JsonToNBT.getTagFromJson(serializedValue));
-            } catch (NBTException e) {
-                Configurator.LOGGER.error(e);
-            }
-        }
-        return ItemStack.EMPTY;
+        return serializedValue != null ? ItemStackCache.getStack(serializedValue) : ItemStack.EMPTY;
     }
 
     @Override
@@ -1,15 +1,158 @@
 package configurator.api;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import configurator.ConfigProfiler;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Objects;
 
 /**
  * <p>
  * config value that stores a json object.
- * </p>
+ * </p><p>
  * same as ConfigValue of JsonObject
+ * </p>
+ * values set to compact only keep a read-only {@link CompactJsonObject} instead of the gson tree, see {@link JsonConfigValue#setCompact(boolean)}.
  */
 public class JsonConfigValue extends ConfigValue<JsonObject> {
+    protected volatile boolean compact = false;
+    @Nullable
+    protected volatile CompactJsonObject compactValue;
+    /** the default value of values stored in compact form, which keep no gson tree for it either */
+    @Nullable
+    protected CompactJsonObject compactDefault;
+
     public JsonConfigValue(String name, ConfigCategory parentCategory) {
         super(name, parentCategory);
     }
+
+    /**
+     * <p>
+     * stores this value as a {@link CompactJsonObject} from now on, and drops the gson tree.
+     * </p>
+     * {@link JsonConfigValue#get()} then builds a new gson copy on every call, read with {@link JsonConfigValue#getCompact()} instead.
+     * @param compact if this value is stored in compact form
+     */
+    public void setCompact(boolean compact) {
+        JsonObject current = peek();
+        JsonObject currentDefault = getDefault();
+        this.compact = compact;
+        this.value = compact ? null : current;
+        this.compactValue = compact && current != null ? CompactJsonObject.of(current) : null;
+        this.defaultValue = compact ? null : currentDefault;
+        this.compactDefault = compact && currentDefault != null ? CompactJsonObject.of(currentDefault) : null;
+    }
+
+    @Override
+    public void markDefault() {
+        if (!compact) {
+            super.markDefault();
+            return;
+        }
+        this.compactDefault = compactValue;
+        this.layer = ConfigLayer.DEFAULT;
+    }
+
+    /**
+     * gets the default value. values stored in compact form return a new copy on every call.
+     * @return the default value
+     */
+    @Override
+    @Nullable
+    public JsonObject getDefault() {
+        if (!compact) return super.getDefault();
+        CompactJsonObject compactDefault = this.compactDefault;
+        return compactDefault != null ? compactDefault.toJson() : null;
+    }
+
+    /**
+     * @return if this value is stored in compact form
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    @Override
+    public void set(@Nullable JsonObject value) {
+        if (!compact) {
+            super.set(value);
+            return;
+        }
+        CompactJsonObject compactValue = value != null ? CompactJsonObject.of(value) : null;
+        if (!Objects.equals(this.compactValue, compactValue)) version++;
+        this.compactValue = compactValue;
+    }
+
+    /**
+     * gets the current value as a read-only compact object.
+     * values that are not stored in compact form are copied on every call.
+     * @return the compact object, or null if the value is null
+     */
+    @Nullable
+    public CompactJsonObject getCompact() {
+        ensureLoaded();
+        if (ConfigProfiler.isEnabled()) reads.increment();
+        CompactJsonObject compactValue = this.compactValue;
+        JsonObject value = this.value;
+        if (lazyLoader != null) {
+            ensureLoaded();
+            compactValue = this.compactValue;
+            value = this.value;
+        }
+        if (compact) return compactValue;
+        return value != null ? CompactJsonObject.of(value) : null;
+    }
+
+    /**
+     * gets the stored json object. values stored in compact form build a new gson copy of the whole tree on every call,
+     * which allocates as much as the value holds; read them with {@link #getCompact()} where they are read often.
+     * @return the json object
+     */
+    @Override
+    @Nullable
+    public JsonObject get() {
+        if (!compact) return super.get();
+        CompactJsonObject compactValue = getCompact();
+        return compactValue != null ? compactValue.toJson() : null;
+    }
+
+    @Override
+    @Nullable
+    protected JsonObject peek() {
+        if (!compact) return value;
+        CompactJsonObject compactValue = this.compactValue;
+        return compactValue != null ? compactValue.toJson() : null;
+    }
+
+    @Override
+    public void writeToJson(JsonObject json) {
+        if (!compact) super.writeToJson(json);
+        else if (compactValue != null) json.add(name, compactValue.toJson());
+    }
+
+    @Override
+    public void writeToJson(JsonWriter writer) throws IOException {
+        if (!compact || writesTree()) {
+            super.writeToJson(writer);
+            return;
+        }
+        CompactJsonObject compactValue = this.compactValue;
+        writer.name(name);
+        if (compactValue != null) compactValue.write(writer);
+        else writer.nullValue();
+    }
+
+    @Override
+    @Nullable
+    protected Object captureState() {
+        return compact ? compactValue : value;
+    }
+
+    @Override
+    protected void restoreState(@Nullable Object state) {
+        if (compact) this.compactValue = (CompactJsonObject)state;
+        else this.value = (JsonObject)state;
+    }
 }
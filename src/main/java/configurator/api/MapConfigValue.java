@@ -0,0 +1,43 @@
+package configurator.api;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * <p>
+ * stores a map as a json object, keys and values are converted with {@link ConfigCodec}s.
+ * </p>
+ * lookups go through a {@link FrozenMap} built on load, so they do not touch json.
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class MapConfigValue<K, V> extends AbstractMapConfigValue<K, V, FrozenMap<K, V>> {
+    public MapConfigValue(String name, ConfigCodec<K> keyCodec, ConfigCodec<V> valueCodec, ConfigCategory parentCategory) {
+        super(name, keyCodec, valueCodec, parentCategory);
+    }
+
+    /**
+     * gets the value of a key.
+     * @param key the key
+     * @return the value, or null if the map does not contain the key
+     */
+    @Nullable
+    public V get(K key) {
+        return getMap().get(key);
+    }
+
+    /**
+     * gets the value of a key.
+     * @param key the key
+     * @param defaultValue the value returned if the map does not contain the key
+     * @return the value, or the default value
+     */
+    public V getOrDefault(K key, V defaultValue) {
+        return getMap().getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    protected FrozenMap<K, V> freeze(Map<K, V> decoded) {
+        return FrozenMap.of(decoded);
+    }
+}
@@ -0,0 +1,36 @@
+package configurator.api;
+
+import configurator.Configurator;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * reports registry names missing from their registry once per name, instead of on every resolve of every value.
+ */
+final class MissingEntries {
+    private static final Set<String> REPORTED = ConcurrentHashMap.newKeySet();
+
+    private MissingEntries() {}
+
+    /**
+     * reports a registry that does not exist.
+     * @param value the name of the config value
+     * @param registryType the type of the registry
+     */
+    static void reportRegistry(String value, Class<?> registryType) {
+        if (REPORTED.add(registryType.getName())) Configurator.LOGGER.error("Config value {} uses the unknown registry {}", value, registryType.getName());
+    }
+
+    /**
+     * reports a name missing from its registry.
+     * @param value the name of the config value
+     * @param location the missing name
+     * @param registryType the type of the registry
+     */
+    static void reportEntry(String value, @Nullable Object location, Class<?> registryType) {
+        if (location == null) return;
+        if (REPORTED.add(registryType.getName() + "/" + location)) Configurator.LOGGER.warn("Config value {} refers to {}, which is not in the {} registry", value, location, registryType.getSimpleName());
+    }
+}
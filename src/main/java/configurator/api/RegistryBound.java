@@ -0,0 +1,17 @@
+package configurator.api;
+
+/**
+ * <p>
+ * A config value that resolves its stored names against a forge registry.
+ * </p>
+ * Configurator resolves these values once the registries are complete, again when registry ids are remapped,
+ * and whenever the value is loaded or reloaded after that.
+ */
+public interface RegistryBound {
+    /**
+     * Looks up the stored names in the registry and caches the result. Missing entries are reported here.
+     * The version of the value moves forward when the result changes, so derived values are computed again.
+     * Called with the config locked.
+     */
+    void resolve();
+}
@@ -0,0 +1,83 @@
+package configurator.api;
+
+import configurator.Configurator;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fml.common.registry.GameRegistry;
+import net.minecraftforge.registries.IForgeRegistry;
+import net.minecraftforge.registries.IForgeRegistryEntry;
+
+import javax.annotation.Nullable;
+
+/**
+ * <p>
+ * stores a registry entry as a modid:value string.
+ * </p><p>
+ * the entry is looked up once after the registries are complete and cached,
+ * use {@link RegistryEntryConfigValue#getEntry()} to get it without a registry lookup.
+ * </p>
+ * entries missing from the registry are reported once when the value is resolved, {@link RegistryEntryConfigValue#getEntry()} then returns null.
+ * @param <V> the registry type
+ */
+public class RegistryEntryConfigValue<V extends IForgeRegistryEntry<V>> extends ResourceLocationConfigValue implements RegistryBound {
+    protected final Class<V> registryType;
+    protected volatile V entry;
+    protected volatile boolean resolved = false;
+
+    public RegistryEntryConfigValue(String name, Class<V> registryType, ConfigCategory parentCategory) {
+        super(name, parentCategory);
+        this.registryType = registryType;
+    }
+
+    @Override
+    public void set(@Nullable String value) {
+        super.set(value);
+        this.resolved = false;
+        this.entry = null;
+        if (Configurator.areRegistriesReady()) resolve();
+    }
+
+    @Override
+    protected void restoreState(@Nullable Object state) {
+        super.restoreState(state);
+        this.resolved = false;
+        this.entry = null;
+        if (Configurator.areRegistriesReady()) resolve();
+    }
+
+    @Override
+    public void resolve() {
+        ResourceLocation location = this.realValue;
+        IForgeRegistry<V> registry = GameRegistry.findRegistry(registryType);
+        V found = null;
+        if (registry == null) MissingEntries.reportRegistry(name, registryType);
+        else if (location != null && registry.containsKey(location)) found = registry.getValue(location);
+        else MissingEntries.reportEntry(name, location, registryType);
+        // derived values built from the entry are computed again
+        if (found != entry) version++;
+        this.entry = found;
+        this.resolved = true;
+    }
+
+    /**
+     * Gets the registry entry that the stored name refers to.
+     * @return the cached registry entry, or null if the registry does not contain it or the registries are not complete yet
+     */
+    @Nullable
+    public V getEntry() {
+        ensureLoaded();
+        if (!resolved) {
+            // nothing is cached until the registries are complete, entries registered later would stay missing
+            if (!Configurator.areRegistriesReady()) return null;
+            resolve();
+        }
+        return entry;
+    }
+
+    /**
+     * Gets the type of the registry this value refers to.
+     * @return the registry type
+     */
+    public Class<V> getRegistryType() {
+        return registryType;
+    }
+}
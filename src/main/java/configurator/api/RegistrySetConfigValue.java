@@ -0,0 +1,180 @@
+package configurator.api;
+
+import com.google.gson.JsonArray;
+import configurator.Configurator;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fml.common.registry.GameRegistry;
+import net.minecraftforge.registries.ForgeRegistry;
+import net.minecraftforge.registries.IForgeRegistry;
+import net.minecraftforge.registries.IForgeRegistryEntry;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <p>
+ * stores a set of registry entries as a list of modid:value strings, useful for whitelists and blacklists.
+ * a modid:* entry matches every entry of that mod.
+ * </p><p>
+ * the names are resolved into a bitset over the numeric registry ids once the registries are complete,
+ * and again when the ids are remapped. a membership check is then a single bit test.
+ * </p>
+ * names missing from the registry are reported and kept in a hash set, so {@link RegistrySetConfigValue#contains(ResourceLocation)} still matches them.
+ * @param <V> the registry type
+ */
+public class RegistrySetConfigValue<V extends IForgeRegistryEntry<V>> extends ArrayConfigValue implements RegistryBound {
+    protected final Class<V> registryType;
+    protected volatile Membership<V> membership = new Membership<>(null, new BitSet(), Collections.emptySet(), Collections.emptySet());
+    protected volatile boolean resolved = false;
+
+    public RegistrySetConfigValue(String name, Class<V> registryType, ConfigCategory parentCategory) {
+        super(name, parentCategory);
+        this.registryType = registryType;
+    }
+
+    @Override
+    public void set(@Nullable JsonArray value) {
+        super.set(value);
+        this.resolved = false;
+        if (Configurator.areRegistriesReady()) resolve();
+    }
+
+    @Override
+    protected void restoreState(@Nullable Object state) {
+        super.restoreState(state);
+        this.resolved = false;
+        if (Configurator.areRegistriesReady()) resolve();
+    }
+
+    @Override
+    public void resolve() {
+        IForgeRegistry<V> registry = GameRegistry.findRegistry(registryType);
+        if (registry == null) MissingEntries.reportRegistry(name, registryType);
+        ForgeRegistry<V> forgeRegistry = asForgeRegistry(registry);
+
+        BitSet ids = new BitSet();
+        Set<ResourceLocation> unresolved = new HashSet<>();
+        Set<String> mods = new HashSet<>();
+        for (String entry : getStringList()) {
+            if (entry.endsWith(":*")) {
+                mods.add(entry.substring(0, entry.length() - 2));
+                continue;
+            }
+            ResourceLocation location = new ResourceLocation(entry);
+            if (forgeRegistry != null && forgeRegistry.containsKey(location)) ids.set(forgeRegistry.getID(location));
+            else {
+                if (registry != null) MissingEntries.reportEntry(name, location, registryType);
+                unresolved.add(location);
+            }
+        }
+        if (forgeRegistry != null && !mods.isEmpty()) {
+            for (ResourceLocation key : forgeRegistry.getKeys())
+                if (mods.contains(key.getNamespace())) ids.set(forgeRegistry.getID(key));
+        }
+
+        Membership<V> previous = this.membership;
+        this.membership = new Membership<>(forgeRegistry, ids, unresolved, mods);
+        this.resolved = true;
+        // derived values built from the set are computed again when a remap moved its ids
+        if (forgeRegistry != previous.registry || !ids.equals(previous.ids) || !unresolved.equals(previous.unresolved) || !mods.equals(previous.mods)) version++;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static <V extends IForgeRegistryEntry<V>> ForgeRegistry<V> asForgeRegistry(@Nullable IForgeRegistry<V> registry) {
+        // the registry found for an entry type holds entries of that type
+        return registry instanceof ForgeRegistry ? (ForgeRegistry<V>)registry : null;
+    }
+
+    protected Membership<V> getMembership() {
+        ensureLoaded();
+        if (!resolved) {
+            // until the registries are complete only names are matched, and nothing is cached
+            if (!Configurator.areRegistriesReady()) return getNames();
+            resolve();
+        }
+        return membership;
+    }
+
+    private Membership<V> getNames() {
+        Set<ResourceLocation> names = new HashSet<>();
+        Set<String> mods = new HashSet<>();
+        for (String entry : getStringList()) {
+            if (entry.endsWith(":*")) mods.add(entry.substring(0, entry.length() - 2));
+            else names.add(new ResourceLocation(entry));
+        }
+        return new Membership<>(null, new BitSet(), names, mods);
+    }
+
+    /**
+     * checks if the set contains a registry id.
+     * @param id the numeric registry id
+     * @return if the set contains the entry with that id
+     */
+    public boolean contains(int id) {
+        return id >= 0 && getMembership().ids.get(id);
+    }
+
+    /**
+     * checks if the set contains a registry entry.
+     * @param entry the registry entry
+     * @return if the set contains the entry
+     */
+    public boolean contains(@Nullable V entry) {
+        if (entry == null) return false;
+        Membership<V> membership = getMembership();
+        if (membership.registry != null) {
+            int id = membership.registry.getID(entry);
+            return id >= 0 && membership.ids.get(id);
+        }
+        return membership.contains(entry.getRegistryName());
+    }
+
+    /**
+     * checks if the set contains a registry name, the name does not need to be registered.
+     * @param location the registry name
+     * @return if the set contains the name
+     */
+    public boolean contains(@Nullable ResourceLocation location) {
+        if (location == null) return false;
+        Membership<V> membership = getMembership();
+        if (membership.registry != null && membership.registry.containsKey(location)) {
+            int id = membership.registry.getID(location);
+            return id >= 0 && membership.ids.get(id);
+        }
+        return membership.contains(location);
+    }
+
+    /**
+     * Gets the type of the registry this value refers to.
+     * @return the registry type
+     */
+    public Class<V> getRegistryType() {
+        return registryType;
+    }
+
+    /**
+     * the resolved entries, replaced as a whole so readers never see a half resolved set.
+     */
+    protected static class Membership<V extends IForgeRegistryEntry<V>> {
+        @Nullable
+        protected final ForgeRegistry<V> registry;
+        protected final BitSet ids;
+        protected final Set<ResourceLocation> unresolved;
+        protected final Set<String> mods;
+
+        protected Membership(@Nullable ForgeRegistry<V> registry, BitSet ids, Set<ResourceLocation> unresolved, Set<String> mods) {
+            this.registry = registry;
+            this.ids = ids;
+            this.unresolved = unresolved;
+            this.mods = mods;
+        }
+
+        protected boolean contains(@Nullable ResourceLocation location) {
+            return location != null && (unresolved.contains(location) || mods.contains(location.getNamespace()));
+        }
+    }
+}
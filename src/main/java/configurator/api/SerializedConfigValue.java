@@ -1,6 +1,10 @@
 package configurator.api;
 
+import configurator.ConfigProfiler;
+
 import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * <p>
@@ -13,7 +17,9 @@ import javax.annotation.Nullable;
  */
 public abstract class SerializedConfigValue<T> extends StringConfigValue {
     /** The deserialized value */
-    protected T realValue;
+    protected volatile T realValue;
+    /** counts reads of the deserialized value while read profiling is enabled */
+    protected final LongAdder realReads = new LongAdder();
 
     public SerializedConfigValue(String name, ConfigCategory parentCategory) {
         super(name, parentCategory);
@@ -21,16 +27,59 @@ public abstract class SerializedConfigValue<T> extends StringConfigValue {
 
     @Override
     public void set(@Nullable String value) {
+        if (!Objects.equals(this.value, value)) version++;
         this.realValue = deserialize(value);
         this.value = value;
     }
 
+    @Override
+    protected Object captureState() {
+        return new Object[] {value, realValue};
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void restoreState(@Nullable Object state) {
+        Object[] values = (Object[])state;
+        this.value = (String)values[0];
+        this.realValue = (T)values[1];
+    }
+
+    /**
+     * Deserializes the stored value again, for values that depend on state that changed since they were set.
+     */
+    public void refresh() {
+        this.realValue = deserialize(value);
+        this.version++;
+    }
+
     /**
      * Gets the deserialized version of the stored value.
      * @return the deserialized value
      */
     public T getReal() {
-        return this.realValue;
+        ensureLoaded();
+        if (ConfigProfiler.isEnabled()) realReads.increment();
+        T realValue = this.realValue;
+        if (lazyLoader != null) {
+            ensureLoaded();
+            realValue = this.realValue;
+        }
+        return realValue;
+    }
+
+    /**
+     * Gets how many times the deserialized value was read while read profiling was enabled.
+     * @return the read count of the deserialized value
+     */
+    public long getRealReads() {
+        return realReads.sum();
+    }
+
+    @Override
+    public void resetReads() {
+        super.resetReads();
+        realReads.reset();
     }
 
     /**